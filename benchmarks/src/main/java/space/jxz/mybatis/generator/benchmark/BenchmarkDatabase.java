@@ -0,0 +1,91 @@
+package space.jxz.mybatis.generator.benchmark;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.LocalCacheScope;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 每个基准测试使用一个独立的H2内存库 (MySQL模式), 表结构与生成mapper时使用的schema.sql相同
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final Connection keepAlive;
+
+    private final SqlSession sqlSession;
+
+    /**
+     * @param mapperTypes 需要注册的mapper接口, 对应的xml在同一个包中
+     */
+    public BenchmarkDatabase(Class<?>... mapperTypes) throws SQLException {
+        String url = "jdbc:h2:mem:benchmark" + SEQUENCE.incrementAndGet()
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;INIT=RUNSCRIPT FROM 'classpath:schema.sql'";
+        UnpooledDataSource dataSource = new UnpooledDataSource("org.h2.Driver", url, "sa", "");
+        // 内存库在最后一个连接关闭时删除, 保持一个连接直到close()
+        keepAlive = dataSource.getConnection();
+
+        Configuration configuration = new Configuration(
+                new Environment("benchmark", new JdbcTransactionFactory(), dataSource));
+        // 重复执行相同的查询时不使用SqlSession的一级缓存, 每次都访问数据库
+        configuration.setLocalCacheScope(LocalCacheScope.STATEMENT);
+        configuration.setCacheEnabled(false);
+        for (Class<?> mapperType : mapperTypes) {
+            configuration.addMapper(mapperType);
+        }
+        SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+        sqlSession = sqlSessionFactory.openSession(true);
+    }
+
+    public <T> T getMapper(Class<T> mapperType) {
+        return sqlSession.getMapper(mapperType);
+    }
+
+    /**
+     * 向t_item写入rows行, id从1开始连续
+     */
+    public void fillItems(int rows) throws SQLException {
+        String sql = "insert into t_item (sku, name, price, stock, description) values (?, ?, ?, ?, ?)";
+        StringBuilder description = new StringBuilder();
+        while (description.length() < 1024) {
+            description.append("benchmark item description ");
+        }
+        try (PreparedStatement statement = keepAlive.prepareStatement(sql)) {
+            for (int i = 1; i <= rows; i++) {
+                statement.setString(1, String.format("SKU-%08d", i));
+                statement.setString(2, "item " + i);
+                statement.setInt(3, i % 10000);
+                statement.setInt(4, i % 100);
+                statement.setString(5, description.toString());
+                statement.addBatch();
+                if (i % 1000 == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+    }
+
+    public void truncate(String table) throws SQLException {
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("truncate table " + table);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        sqlSession.close();
+        keepAlive.close();
+    }
+}
@@ -0,0 +1,62 @@
+package space.jxz.mybatis.generator.benchmark;
+
+import org.mybatis.generator.api.GeneratedJavaFile;
+import org.mybatis.generator.api.GeneratedXmlFile;
+import org.mybatis.generator.api.IntrospectedTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成一张表的java文件(model, example, mapper接口)和mapper xml的耗时, plugin=false时是MBG本身的耗时,
+ * 两者的差就是插件的hook(clientGenerated, sqlMapDocumentGenerated, model的注释等)的耗时.
+ * 使用 -prof gc 查看每次生成分配的内存(gc.alloc.rate.norm)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerationBenchmark {
+
+    private static final int TABLES = 64;
+
+    @Param({"50", "200", "500"})
+    public int columns;
+
+    @Param({"true", "false"})
+    public boolean plugin;
+
+    private List<IntrospectedTable> tables;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        int[] columnCounts = new int[TABLES];
+        java.util.Arrays.fill(columnCounts, columns);
+        SyntheticSchema schema = new SyntheticSchema(columnCounts);
+        if (plugin) {
+            schema.install(schema.newPlugin());
+        }
+        schema.initializeTables();
+        tables = schema.getTables();
+    }
+
+    private IntrospectedTable nextTable() {
+        next = (next + 1) % tables.size();
+        return tables.get(next);
+    }
+
+    @Benchmark
+    public List<GeneratedJavaFile> javaFiles() {
+        return nextTable().getGeneratedJavaFiles();
+    }
+
+    @Benchmark
+    public List<GeneratedXmlFile> xmlFiles() {
+        return nextTable().getGeneratedXmlFiles();
+    }
+}
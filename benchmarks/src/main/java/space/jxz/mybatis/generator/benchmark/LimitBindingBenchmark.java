@@ -0,0 +1,72 @@
+package space.jxz.mybatis.generator.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import space.jxz.mybatis.generator.benchmark.bound.mapper.TItemMapper;
+import space.jxz.mybatis.generator.benchmark.bound.model.TItem;
+import space.jxz.mybatis.generator.benchmark.bound.model.TItemExample;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 翻页查询: limit/offset用${}拼接(literal, 每个offset是不同的sql) 与 用#{}绑定(bound, 所有offset是同一条sql) 对比
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LimitBindingBenchmark {
+
+    private static final int ROWS = 10000;
+
+    private static final int PAGE_SIZE = 20;
+
+    private BenchmarkDatabase database;
+
+    private TItemMapper boundMapper;
+
+    private space.jxz.mybatis.generator.benchmark.literal.mapper.TItemMapper literalMapper;
+
+    private int page;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = new BenchmarkDatabase(TItemMapper.class,
+                space.jxz.mybatis.generator.benchmark.literal.mapper.TItemMapper.class);
+        database.fillItems(ROWS);
+        boundMapper = database.getMapper(TItemMapper.class);
+        literalMapper = database.getMapper(space.jxz.mybatis.generator.benchmark.literal.mapper.TItemMapper.class);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    private int nextOffset() {
+        page = (page + 1) % (ROWS / PAGE_SIZE);
+        return page * PAGE_SIZE;
+    }
+
+    @Benchmark
+    public List<TItem> bound() {
+        TItemExample example = new TItemExample();
+        example.createCriteria().andStockGreaterThanOrEqualTo(0);
+        example.setOffset(nextOffset());
+        example.setLimit(PAGE_SIZE);
+        return boundMapper.selectByExample(example);
+    }
+
+    @Benchmark
+    public List<space.jxz.mybatis.generator.benchmark.literal.model.TItem> literal() {
+        space.jxz.mybatis.generator.benchmark.literal.model.TItemExample example =
+                new space.jxz.mybatis.generator.benchmark.literal.model.TItemExample();
+        example.createCriteria().andStockGreaterThanOrEqualTo(0);
+        example.setOffset(nextOffset());
+        example.setLimit(PAGE_SIZE);
+        return literalMapper.selectByExample(example);
+    }
+}
@@ -0,0 +1,66 @@
+package space.jxz.mybatis.generator.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import space.jxz.mybatis.generator.benchmark.bound.mapper.TItemMapper;
+import space.jxz.mybatis.generator.benchmark.bound.model.TItem;
+import space.jxz.mybatis.generator.benchmark.bound.model.TItemExample;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读取第offset行之后的一页: limit offset, n 与 keyset分页 selectByExampleAfterKey() 对比
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaginationBenchmark {
+
+    private static final int ROWS = 100000;
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"0", "10000", "90000"})
+    public int offset;
+
+    private BenchmarkDatabase database;
+
+    private TItemMapper mapper;
+
+    private TItem lastKey;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = new BenchmarkDatabase(TItemMapper.class);
+        database.fillItems(ROWS);
+        mapper = database.getMapper(TItemMapper.class);
+        if (offset > 0) {
+            // id从1开始连续, 第offset行的id就是offset
+            lastKey = new TItem();
+            lastKey.setId((long) offset);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public List<TItem> offset() {
+        TItemExample example = new TItemExample();
+        example.setOrderByClause("id");
+        example.setOffset(offset);
+        example.setLimit(PAGE_SIZE);
+        return mapper.selectByExample(example);
+    }
+
+    @Benchmark
+    public List<TItem> keyset() {
+        return mapper.selectByExampleAfterKey(new TItemExample(), lastKey, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,136 @@
+package space.jxz.mybatis.generator.benchmark;
+
+import org.mybatis.generator.api.IntrospectedColumn;
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.Plugin.ModelClassType;
+import org.mybatis.generator.api.dom.java.Field;
+import org.mybatis.generator.api.dom.java.FullyQualifiedJavaType;
+import org.mybatis.generator.api.dom.java.Interface;
+import org.mybatis.generator.api.dom.java.TopLevelClass;
+import org.mybatis.generator.api.dom.xml.Attribute;
+import org.mybatis.generator.api.dom.xml.Document;
+import org.mybatis.generator.api.dom.xml.Element;
+import org.mybatis.generator.api.dom.xml.XmlElement;
+import org.mybatis.generator.codegen.mybatis3.xmlmapper.XMLMapperGenerator;
+import org.mybatis.generator.internal.NullProgressCallback;
+import org.openjdk.jmh.annotations.*;
+import space.jxz.mybatis.generator.Plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 直接调用插件的hook, 输入是一张表MBG生成的结果(不经过插件).
+ * sqlMapDocumentGenerated会修改document, 每次调用前复制一份, copyDocument()是复制本身的耗时.
+ * 使用 -prof gc 查看每次调用分配的内存(gc.alloc.rate.norm)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PluginHookBenchmark {
+
+    private static final int TABLES = 64;
+
+    @Param({"50", "200", "500"})
+    public int columns;
+
+    private Plugin plugin;
+
+    private List<IntrospectedTable> tables;
+
+    private List<Document> documents;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        int[] columnCounts = new int[TABLES];
+        Arrays.fill(columnCounts, columns);
+        SyntheticSchema schema = new SyntheticSchema(columnCounts);
+        // 不安装到Context中, MBG生成的是没有经过插件修改的结果
+        plugin = schema.newPlugin();
+        schema.initializeTables();
+        tables = schema.getTables();
+
+        documents = new ArrayList<>();
+        for (IntrospectedTable introspectedTable : tables) {
+            XMLMapperGenerator generator = new XMLMapperGenerator();
+            generator.setContext(schema.getContext());
+            generator.setIntrospectedTable(introspectedTable);
+            generator.setProgressCallback(new NullProgressCallback());
+            generator.setWarnings(new ArrayList<>());
+            documents.add(generator.getDocument());
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) % tables.size();
+        return next;
+    }
+
+    @Benchmark
+    public Interface clientGenerated() {
+        IntrospectedTable introspectedTable = tables.get(nextIndex());
+        Interface interfaze = new Interface(new FullyQualifiedJavaType(introspectedTable.getMyBatis3JavaMapperType()));
+        plugin.clientGenerated(interfaze, null, introspectedTable);
+        return interfaze;
+    }
+
+    @Benchmark
+    public Document copyDocument() {
+        return copy(documents.get(nextIndex()));
+    }
+
+    @Benchmark
+    public Document sqlMapDocumentGenerated() {
+        int index = nextIndex();
+        Document document = copy(documents.get(index));
+        plugin.sqlMapDocumentGenerated(document, tables.get(index));
+        return document;
+    }
+
+    /**
+     * model类和每个字段的注释(tableAndColumnComment), 以及final getter/setter
+     */
+    @Benchmark
+    public TopLevelClass modelGenerated() {
+        IntrospectedTable introspectedTable = tables.get(nextIndex());
+        TopLevelClass topLevelClass = new TopLevelClass(introspectedTable.getBaseRecordType());
+        plugin.modelBaseRecordClassGenerated(topLevelClass, introspectedTable);
+        for (IntrospectedColumn introspectedColumn : introspectedTable.getAllColumns()) {
+            Field field = new Field(introspectedColumn.getJavaProperty(), introspectedColumn.getFullyQualifiedJavaType());
+            plugin.modelFieldGenerated(field, topLevelClass, introspectedColumn, introspectedTable, ModelClassType.BASE_RECORD);
+            topLevelClass.addField(field);
+        }
+        return topLevelClass;
+    }
+
+    @Benchmark
+    public String domainObjectName() {
+        IntrospectedTable introspectedTable = tables.get(nextIndex());
+        return plugin.getDomainObjectNameByReserveCaseRule(introspectedTable.getFullyQualifiedTable(), introspectedTable);
+    }
+
+    private static Document copy(Document document) {
+        Document copy = new Document(document.getPublicId(), document.getSystemId());
+        copy.setRootElement(copy(document.getRootElement()));
+        return copy;
+    }
+
+    private static XmlElement copy(XmlElement element) {
+        XmlElement copy = new XmlElement(element.getName());
+        for (Attribute attribute : element.getAttributes()) {
+            copy.addAttribute(attribute);
+        }
+        for (Element child : element.getElements()) {
+            // TextElement不可变, 可以共用
+            copy.addElement(child instanceof XmlElement ? copy((XmlElement) child) : child);
+        }
+        return copy;
+    }
+}
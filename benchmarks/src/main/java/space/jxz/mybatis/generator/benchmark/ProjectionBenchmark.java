@@ -0,0 +1,60 @@
+package space.jxz.mybatis.generator.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import space.jxz.mybatis.generator.benchmark.bound.mapper.TItemMapper;
+import space.jxz.mybatis.generator.benchmark.bound.model.TItem;
+import space.jxz.mybatis.generator.benchmark.bound.model.TItemExample;
+import space.jxz.mybatis.generator.benchmark.bound.model.TItemSummary;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读取1000行: 完整的model(包括1KB的description) 与 只读取id, sku, price 对比
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private BenchmarkDatabase database;
+
+    private TItemMapper mapper;
+
+    private TItemExample example;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = new BenchmarkDatabase(TItemMapper.class);
+        database.fillItems(ROWS);
+        mapper = database.getMapper(TItemMapper.class);
+        example = new TItemExample();
+        example.setLimit(ROWS);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public List<TItem> fullModel() {
+        return mapper.selectByExample(example);
+    }
+
+    @Benchmark
+    public List<TItem> selectManually() {
+        return mapper.selectManuallyByExample("id, sku, price", example);
+    }
+
+    @Benchmark
+    public List<TItemSummary> projection() {
+        return mapper.selectSummaryByExample(example);
+    }
+}
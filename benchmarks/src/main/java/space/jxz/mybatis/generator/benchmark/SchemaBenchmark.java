@@ -0,0 +1,86 @@
+package space.jxz.mybatis.generator.benchmark;
+
+import org.mybatis.generator.api.FullyQualifiedTable;
+import org.mybatis.generator.api.IntrospectedTable;
+import org.openjdk.jmh.annotations.*;
+import space.jxz.mybatis.generator.Plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * beforeGenerate()阶段遍历所有表的步骤, 表数量为tables, 每张表的列数在50到500之间.
+ * 10000张表时需要约2GB堆内存
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SchemaBenchmark {
+
+    @Param({"1000", "10000"})
+    public int tables;
+
+    private Plugin plugin;
+
+    private List<IntrospectedTable> introspectedTables;
+
+    private List<FullyQualifiedTable> originalTables;
+
+    @Setup
+    public void setUp() {
+        int[] columnCounts = new int[tables];
+        for (int i = 0; i < tables; i++) {
+            columnCounts[i] = 50 + (i * 37) % 451;
+        }
+        SyntheticSchema schema = new SyntheticSchema(columnCounts);
+        plugin = schema.newPlugin();
+        introspectedTables = new ArrayList<>(schema.getTables());
+        originalTables = new ArrayList<>();
+        for (IntrospectedTable introspectedTable : introspectedTables) {
+            originalTables.add(introspectedTable.getFullyQualifiedTable());
+        }
+    }
+
+    /**
+     * domainObjectToCamelAndReserveCase()会把FullyQualifiedTable包装一层, 每次调用前恢复, 避免一层层嵌套
+     */
+    @Setup(Level.Invocation)
+    public void restoreTables() {
+        List<IntrospectedTable> list = plugin.getIntrospectTables();
+        list.clear();
+        list.addAll(introspectedTables);
+        for (int i = 0; i < introspectedTables.size(); i++) {
+            introspectedTables.get(i).setFullyQualifiedTable(originalTables.get(i));
+        }
+    }
+
+    @Benchmark
+    public void columnNames() {
+        plugin.columnToCamelAndReserveCase();
+    }
+
+    @Benchmark
+    public int domainObjectNames() {
+        plugin.domainObjectToCamelAndReserveCase();
+        int length = 0;
+        for (IntrospectedTable introspectedTable : introspectedTables) {
+            length += introspectedTable.getFullyQualifiedTable().getDomainObjectName().length();
+        }
+        return length;
+    }
+
+    /**
+     * incrementalGenerate计算所有表的指纹, 上次的清单为空, 不会去掉任何表
+     */
+    @Benchmark
+    public Properties fingerprints() {
+        Properties current = new Properties();
+        plugin.removeUnchangedIntrospectedTables(new Properties(), current);
+        return current;
+    }
+}
@@ -0,0 +1,221 @@
+package space.jxz.mybatis.generator.benchmark;
+
+import org.mybatis.generator.api.FullyQualifiedTable;
+import org.mybatis.generator.api.IntrospectedColumn;
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.dom.java.FullyQualifiedJavaType;
+import org.mybatis.generator.config.*;
+import org.mybatis.generator.internal.NullProgressCallback;
+import org.mybatis.generator.internal.ObjectFactory;
+import org.mybatis.generator.internal.PluginAggregator;
+import org.mybatis.generator.internal.util.JavaBeansUtil;
+import space.jxz.mybatis.generator.Plugin;
+import space.jxz.mybatis.generator.TableMetadata;
+
+import java.lang.reflect.Field;
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * 不连接数据库, 直接构造Context和IntrospectedTable, 模拟DatabaseIntrospector读取的表结构.
+ * 每张表第一列是自增主键id, 其余列轮流使用几种常见的类型, 其中有一个LONGVARCHAR列(生成WithBLOBs的方法)
+ */
+public class SyntheticSchema {
+
+    /**
+     * 基准测试打开的插件功能, 不包括生成额外文件的batchWriter/asyncMapper
+     */
+    public static final String[] FUNCTIONS = {
+            "finalGetterSetter", "limitAndOffset", "bindLimitAndOffset", "manuallySelect", "manuallyUpdate",
+            "insertOrUpdate", "batchInsertOrUpdate", "batchUpdate", "selectByPrimaryKeys", "streamingSelect",
+            "increment", "keysetPagination", "tableAndColumnComment", "columnNameRule2", "domainObjectNameRule2"
+    };
+
+    private static final int[] JDBC_TYPES = {
+            Types.VARCHAR, Types.INTEGER, Types.BIGINT, Types.DECIMAL, Types.TIMESTAMP, Types.BIT, Types.VARCHAR
+    };
+
+    private static final String[] JDBC_TYPE_NAMES = {
+            "VARCHAR", "INTEGER", "BIGINT", "DECIMAL", "TIMESTAMP", "BIT", "VARCHAR"
+    };
+
+    private static final FullyQualifiedJavaType[] JAVA_TYPES = {
+            FullyQualifiedJavaType.getStringInstance(),
+            new FullyQualifiedJavaType("java.lang.Integer"),
+            new FullyQualifiedJavaType("java.lang.Long"),
+            new FullyQualifiedJavaType("java.math.BigDecimal"),
+            FullyQualifiedJavaType.getDateInstance(),
+            FullyQualifiedJavaType.getBooleanPrimitiveInstance().getPrimitiveTypeWrapper(),
+            FullyQualifiedJavaType.getStringInstance()
+    };
+
+    private final Context context;
+
+    private final List<IntrospectedTable> tables = new ArrayList<>();
+
+    private final Map<String, TableMetadata> metadata = new HashMap<>();
+
+    /**
+     * @param columnCounts 每张表的列数, 包括主键
+     */
+    public SyntheticSchema(int[] columnCounts) {
+        context = new Context(ModelType.CONDITIONAL);
+        context.setId("synthetic");
+        context.setTargetRuntime("MyBatis3");
+
+        JDBCConnectionConfiguration jdbcConnectionConfiguration = new JDBCConnectionConfiguration();
+        jdbcConnectionConfiguration.setDriverClass("none");
+        jdbcConnectionConfiguration.setConnectionURL("jdbc:none");
+        context.setJdbcConnectionConfiguration(jdbcConnectionConfiguration);
+
+        CommentGeneratorConfiguration commentGeneratorConfiguration = new CommentGeneratorConfiguration();
+        commentGeneratorConfiguration.addProperty("suppressDate", "true");
+        context.setCommentGeneratorConfiguration(commentGeneratorConfiguration);
+
+        JavaModelGeneratorConfiguration javaModelGeneratorConfiguration = new JavaModelGeneratorConfiguration();
+        javaModelGeneratorConfiguration.setTargetPackage("synthetic.model");
+        javaModelGeneratorConfiguration.setTargetProject("target");
+        context.setJavaModelGeneratorConfiguration(javaModelGeneratorConfiguration);
+
+        SqlMapGeneratorConfiguration sqlMapGeneratorConfiguration = new SqlMapGeneratorConfiguration();
+        sqlMapGeneratorConfiguration.setTargetPackage("synthetic.mapper");
+        sqlMapGeneratorConfiguration.setTargetProject("target");
+        context.setSqlMapGeneratorConfiguration(sqlMapGeneratorConfiguration);
+
+        JavaClientGeneratorConfiguration javaClientGeneratorConfiguration = new JavaClientGeneratorConfiguration();
+        javaClientGeneratorConfiguration.setConfigurationType("XMLMAPPER");
+        javaClientGeneratorConfiguration.setTargetPackage("synthetic.mapper");
+        javaClientGeneratorConfiguration.setTargetProject("target");
+        context.setJavaClientGeneratorConfiguration(javaClientGeneratorConfiguration);
+
+        for (int i = 0; i < columnCounts.length; i++) {
+            addTable(String.format("t_synthetic_table_%05d", i), columnCounts[i]);
+        }
+        setContextField("introspectedTables", tables);
+        setContextField("pluginAggregator", new PluginAggregator());
+    }
+
+    private void addTable(String tableName, int columnCount) {
+        TableConfiguration tc = new TableConfiguration(context);
+        tc.setTableName(tableName);
+        // 去掉表名前缀, 每次计算domainObjectName都会用到这个规则
+        DomainObjectRenamingRule renamingRule = new DomainObjectRenamingRule();
+        renamingRule.setSearchString("^TSynthetic");
+        renamingRule.setReplaceString("");
+        tc.setDomainObjectRenamingRule(renamingRule);
+        context.addTableConfiguration(tc);
+
+        FullyQualifiedTable table = new FullyQualifiedTable(null, null, tableName, null, null,
+                false, null, null, null, false, renamingRule, context);
+        IntrospectedTable introspectedTable = ObjectFactory.createIntrospectedTable(tc, table, context);
+        for (int i = 0; i < columnCount; i++) {
+            IntrospectedColumn column = ObjectFactory.createIntrospectedColumn(context);
+            column.setIntrospectedTable(introspectedTable);
+            column.setContext(context);
+            if (i == 0) {
+                column.setActualColumnName("id");
+                column.setJdbcType(Types.BIGINT);
+                column.setJdbcTypeName("BIGINT");
+                column.setFullyQualifiedJavaType(new FullyQualifiedJavaType("java.lang.Long"));
+                column.setNullable(false);
+                column.setAutoIncrement(true);
+            } else if (i == 1) {
+                column.setActualColumnName("content");
+                column.setJdbcType(Types.LONGVARCHAR);
+                column.setJdbcTypeName("LONGVARCHAR");
+                column.setFullyQualifiedJavaType(FullyQualifiedJavaType.getStringInstance());
+                column.setNullable(true);
+                column.setRemarks("大文本列");
+            } else {
+                int type = i % JDBC_TYPES.length;
+                column.setActualColumnName(String.format("column_%d_value", i));
+                column.setJdbcType(JDBC_TYPES[type]);
+                column.setJdbcTypeName(JDBC_TYPE_NAMES[type]);
+                column.setFullyQualifiedJavaType(JAVA_TYPES[type]);
+                column.setNullable(i % 3 != 0);
+                column.setLength(JDBC_TYPES[type] == Types.VARCHAR ? 255 : 0);
+                column.setRemarks(String.format("第%d列的注释", i));
+            }
+            column.setJavaProperty(JavaBeansUtil.getCamelCaseString(
+                    column.getActualColumnName(), false));
+            introspectedTable.addColumn(column);
+        }
+        introspectedTable.addPrimaryKeyColumn("id");
+        tables.add(introspectedTable);
+
+        TableMetadata tableMetadata = new TableMetadata();
+        tableMetadata.setComment("合成的表 " + tableName);
+        tableMetadata.setAutoIncrementColumnName("id");
+        tableMetadata.getUniqueKeys().put("PRIMARY", new LinkedHashSet<>(Collections.singletonList("id")));
+        metadata.put(tableName, tableMetadata);
+    }
+
+    private void setContextField(String name, Object value) {
+        try {
+            Field field = Context.class.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(context, value);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public Context getContext() {
+        return context;
+    }
+
+    public List<IntrospectedTable> getTables() {
+        return tables;
+    }
+
+    /**
+     * 创建插件, setProperties()时执行beforeGenerate()
+     */
+    public Plugin newPlugin() {
+        Plugin plugin = new SyntheticPlugin(metadata);
+        plugin.setContext(context);
+        Properties properties = new Properties();
+        for (String function : FUNCTIONS) {
+            properties.setProperty(function, "true");
+        }
+        plugin.setProperties(properties);
+        return plugin;
+    }
+
+    /**
+     * 把插件加入Context, 之后MBG生成文件时调用插件的方法
+     */
+    public void install(Plugin plugin) {
+        PluginAggregator pluginAggregator = new PluginAggregator();
+        pluginAggregator.addPlugin(plugin);
+        setContextField("pluginAggregator", pluginAggregator);
+    }
+
+    /**
+     * 与Context#generateFiles()一样, 在生成文件之前初始化每张表
+     */
+    public void initializeTables() {
+        List<String> warnings = new ArrayList<>();
+        for (IntrospectedTable introspectedTable : tables) {
+            introspectedTable.initialize();
+            introspectedTable.calculateGenerators(warnings, new NullProgressCallback());
+        }
+    }
+
+    /**
+     * 返回假的表元数据, 不连接数据库
+     */
+    private static class SyntheticPlugin extends Plugin {
+
+        private final Map<String, TableMetadata> metadata;
+
+        SyntheticPlugin(Map<String, TableMetadata> metadata) {
+            this.metadata = metadata;
+        }
+
+        @Override
+        public TableMetadata getTableMetadata(IntrospectedTable introspectedTable) {
+            return metadata.get(getTableKey(introspectedTable));
+        }
+    }
+}
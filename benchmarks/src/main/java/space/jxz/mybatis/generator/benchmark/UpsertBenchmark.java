@@ -0,0 +1,73 @@
+package space.jxz.mybatis.generator.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import space.jxz.mybatis.generator.benchmark.bound.mapper.TItemStatMapper;
+import space.jxz.mybatis.generator.benchmark.bound.model.TItemStat;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写入batchSize行 (一半是新行, 一半已经存在):
+ * 逐行调用insertOrUpdateByUniqueKey() 与 一条多行的batchInsertOrUpdateByUniqueKey() 对比
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpsertBenchmark {
+
+    @Param({"10", "100", "500"})
+    public int batchSize;
+
+    private BenchmarkDatabase database;
+
+    private TItemStatMapper mapper;
+
+    private List<TItemStat> records;
+
+    private long nextItemId;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = new BenchmarkDatabase(TItemStatMapper.class);
+        mapper = database.getMapper(TItemStatMapper.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareRecords() {
+        // 前一半的item_id在上一次调用中已经写入, 后一半是新行
+        nextItemId -= batchSize / 2;
+        records = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            TItemStat record = new TItemStat();
+            record.setItemId(++nextItemId);
+            record.setViews(i);
+            record.setSales(i % 10);
+            records.add(record);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public int singleRow() {
+        int rows = 0;
+        for (TItemStat record : records) {
+            rows += mapper.insertOrUpdateByUniqueKey(record);
+        }
+        return rows;
+    }
+
+    @Benchmark
+    public int multiRow() {
+        return mapper.batchInsertOrUpdateByUniqueKey(records);
+    }
+}
@@ -0,0 +1,20 @@
+-- 基准测试使用的表, 生成mapper(H2文件库)和运行基准测试(H2内存库)时都执行这个脚本
+create table if not exists t_item (
+    id bigint not null auto_increment,
+    sku varchar(64) not null,
+    name varchar(128) not null,
+    price int not null,
+    stock int not null,
+    description varchar(2048),
+    created_at timestamp not null default current_timestamp,
+    primary key (id)
+);
+
+create index if not exists idx_item_sku on t_item (sku);
+
+create table if not exists t_item_stat (
+    item_id bigint not null,
+    views int not null,
+    sales int not null,
+    primary key (item_id)
+);
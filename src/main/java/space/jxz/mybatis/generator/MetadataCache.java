@@ -0,0 +1,88 @@
+package space.jxz.mybatis.generator;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 一次生成过程中的表元数据缓存, 每种元数据每张表最多加载一次.
+ * 记录命中/未命中次数, 未命中次数即实际加载的次数
+ */
+public class MetadataCache {
+
+    public enum Kind {
+        TABLE_COMMENT,
+        AUTO_INCREMENT_COLUMN,
+        UNIQUE_KEYS,
+        INDEXES,
+        PRIMARY_KEYS
+    }
+
+    /**
+     * value使用Optional包装, 因为ConcurrentHashMap不能保存null (比如没有自增列的表)
+     */
+    private final Map<Kind, Map<String, Optional<Object>>> caches = new EnumMap<>(Kind.class);
+
+    private final Map<Kind, AtomicLong> hits = new EnumMap<>(Kind.class);
+
+    private final Map<Kind, AtomicLong> misses = new EnumMap<>(Kind.class);
+
+    public MetadataCache() {
+        for (Kind kind : Kind.values()) {
+            caches.put(kind, new ConcurrentHashMap<>());
+            hits.put(kind, new AtomicLong());
+            misses.put(kind, new AtomicLong());
+        }
+    }
+
+    /**
+     * @param tableName 表名, 即PluginAdapterEx#getTableKey()
+     * @param loader    未命中时加载元数据, 可以返回null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Kind kind, String tableName, Function<String, T> loader) {
+        Map<String, Optional<Object>> cache = caches.get(kind);
+        Optional<Object> value = cache.get(tableName);
+        if (value != null) {
+            hits.get(kind).incrementAndGet();
+            return (T) value.orElse(null);
+        }
+
+        // 多个线程同时未命中时只有一个线程执行loader, 其他线程等待它加载完成, 对它们来说是命中
+        boolean[] loaded = new boolean[1];
+        value = cache.computeIfAbsent(tableName, k -> {
+            loaded[0] = true;
+            misses.get(kind).incrementAndGet();
+            return Optional.ofNullable(loader.apply(k));
+        });
+        if (!loaded[0]) {
+            hits.get(kind).incrementAndGet();
+        }
+        return (T) value.orElse(null);
+    }
+
+    public long getHits(Kind kind) {
+        return hits.get(kind).get();
+    }
+
+    public long getMisses(Kind kind) {
+        return misses.get(kind).get();
+    }
+
+    /**
+     * 比如 "metadata cache: TABLE_COMMENT hits=4 misses=2, AUTO_INCREMENT_COLUMN hits=0 misses=2, ..."
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder("metadata cache: ");
+        for (Kind kind : Kind.values()) {
+            if (kind.ordinal() > 0) {
+                sb.append(", ");
+            }
+            sb.append(kind).append(" hits=").append(getHits(kind)).append(" misses=").append(getMisses(kind));
+        }
+        return sb.toString();
+    }
+}
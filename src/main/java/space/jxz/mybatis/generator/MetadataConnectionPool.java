@@ -0,0 +1,112 @@
+package space.jxz.mybatis.generator;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * 加载表元数据使用的固定上限的连接池, 连接在第一次需要时才创建, close()时全部关闭
+ */
+public class MetadataConnectionPool implements AutoCloseable {
+
+    private final Supplier<Connection> connectionFactory;
+
+    private final int maxSize;
+
+    private final BlockingQueue<Connection> idle = new LinkedBlockingQueue<>();
+
+    /**
+     * 已经创建的所有连接, 访问时需要同步
+     */
+    private final List<Connection> opened = new ArrayList<>();
+
+    private int reserved;
+
+    private int totalOpened;
+
+    public MetadataConnectionPool(Supplier<Connection> connectionFactory, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("连接池大小必须大于0: " + maxSize);
+        }
+        this.connectionFactory = connectionFactory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 获取一个空闲连接, 连接数没有达到上限时创建新连接, 否则等待其他线程归还
+     */
+    public Connection borrow() throws InterruptedException {
+        Connection connection = idle.poll();
+        if (connection != null) {
+            return connection;
+        }
+        boolean canOpen;
+        synchronized (opened) {
+            canOpen = reserved < maxSize;
+            if (canOpen) {
+                reserved++;
+            }
+        }
+        if (!canOpen) {
+            return idle.take();
+        }
+        // 在锁外创建连接, 建立连接较慢, 不阻塞其他线程归还/获取连接
+        try {
+            connection = connectionFactory.get();
+        } catch (RuntimeException e) {
+            synchronized (opened) {
+                reserved--;
+            }
+            throw e;
+        }
+        synchronized (opened) {
+            opened.add(connection);
+            totalOpened++;
+        }
+        return connection;
+    }
+
+    public void release(Connection connection) {
+        idle.offer(connection);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 实际创建的物理连接数 (包括close()时已经关闭的)
+     */
+    public int getOpenedCount() {
+        synchronized (opened) {
+            return totalOpened;
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        SQLException exception = null;
+        synchronized (opened) {
+            for (Connection connection : opened) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    if (exception == null) {
+                        exception = e;
+                    } else {
+                        exception.addSuppressed(e);
+                    }
+                }
+            }
+            opened.clear();
+            idle.clear();
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
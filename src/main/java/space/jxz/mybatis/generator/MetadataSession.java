@@ -0,0 +1,108 @@
+package space.jxz.mybatis.generator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 插件一次运行中读取表元数据使用的数据库会话.
+ * Context#getConnection()每次调用都会新建一个物理连接, 所以插件不再直接调用它, 而是通过会话复用连接:
+ * 主连接在第一次使用时创建, 一直复用到close(); 并行加载时另外从连接池租用最多poolSize个连接,
+ * 所以同时打开的连接最多有poolSize + 1个.
+ * 主连接上的PreparedStatement按sql缓存复用. 只有并行加载的任务会在其他线程中使用连接池, 其余方法只能在生成线程中调用
+ */
+public class MetadataSession implements AutoCloseable {
+
+    private final MetadataConnectionPool pool;
+
+    private Connection connection;
+
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    private long statementExecutions;
+
+    /**
+     * @param poolSize 并行加载时除主连接外最多额外使用的连接数, 不并行时为0
+     */
+    public MetadataSession(Supplier<Connection> connectionFactory, int poolSize) {
+        // 主连接也从连接池获取, 但不会归还
+        this.pool = new MetadataConnectionPool(connectionFactory, poolSize + 1);
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (connection == null) {
+            try {
+                connection = pool.borrow();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("获取连接时被中断", e);
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * 返回主连接上缓存的PreparedStatement, 调用方不要关闭它
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = getConnection().prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+        statement.clearParameters();
+        statementExecutions++;
+        return statement;
+    }
+
+    /**
+     * 并行加载时从连接池租用一个连接, 用完后必须调用release()
+     */
+    public Connection lease() throws InterruptedException {
+        return pool.borrow();
+    }
+
+    public void release(Connection connection) {
+        pool.release(connection);
+    }
+
+    /**
+     * 本次会话实际创建的物理连接数
+     */
+    public int getOpenedConnectionCount() {
+        return pool.getOpenedCount();
+    }
+
+    public String report() {
+        return String.format("metadata session: connections=%d, prepared statements=%d, executions=%d",
+                getOpenedConnectionCount(), statements.size(), statementExecutions);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        SQLException exception = null;
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                exception = e;
+            }
+        }
+        statements.clear();
+        connection = null;
+        try {
+            pool.close();
+        } catch (SQLException e) {
+            if (exception != null) {
+                e.addSuppressed(exception);
+            }
+            exception = e;
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
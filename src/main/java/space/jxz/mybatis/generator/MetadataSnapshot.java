@@ -0,0 +1,146 @@
+package space.jxz.mybatis.generator;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 把{@link TableMetadata}保存到本地文件/从本地文件读取, 文件为properties格式, 按key排序以便纳入版本管理, 比如:
+ * <pre>
+ * t_user.autoIncrement=id
+ * t_user.comment=用户表
+ * t_user.fingerprint=6f1ed002ab5595859014ebf0951522d9b4e7d6a8
+ * t_user.index.idx_age=age
+ * t_user.uniqueKey.PRIMARY=id
+ * t_user.uniqueKey.uk_name=first_name,last_name
+ * </pre>
+ */
+public class MetadataSnapshot {
+
+    private static final String FINGERPRINT = ".fingerprint";
+    private static final String COMMENT = ".comment";
+    private static final String AUTO_INCREMENT = ".autoIncrement";
+    private static final String UNIQUE_KEY = ".uniqueKey.";
+    private static final String INDEX = ".index.";
+
+    /**
+     * @return key:表名 (PluginAdapterEx#getTableKey()), 文件不存在时返回空map
+     */
+    public static Map<String, TableMetadata> load(File file) {
+        Map<String, TableMetadata> map = new HashMap<>();
+        if (!file.exists()) {
+            return map;
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new RuntimeException("读取元数据快照失败: " + file, e);
+        }
+
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key);
+            int index;
+            if ((index = key.lastIndexOf(UNIQUE_KEY)) > 0) {
+                Set<String> columns = new LinkedHashSet<>(Arrays.asList(value.split(",")));
+                map.computeIfAbsent(key.substring(0, index), k -> new TableMetadata())
+                        .getUniqueKeys().put(key.substring(index + UNIQUE_KEY.length()), columns);
+            } else if ((index = key.lastIndexOf(INDEX)) > 0) {
+                Set<String> columns = new LinkedHashSet<>(Arrays.asList(value.split(",")));
+                map.computeIfAbsent(key.substring(0, index), k -> new TableMetadata())
+                        .getIndexes().put(key.substring(index + INDEX.length()), columns);
+            } else if (key.endsWith(FINGERPRINT)) {
+                tableOf(map, key, FINGERPRINT).setFingerprint(value);
+            } else if (key.endsWith(COMMENT)) {
+                tableOf(map, key, COMMENT).setComment(value);
+            } else if (key.endsWith(AUTO_INCREMENT)) {
+                tableOf(map, key, AUTO_INCREMENT).setAutoIncrementColumnName(value);
+            }
+        }
+        // properties的key是无序的, UniqueKey和索引由TableMetadata按INDEX_NAME_ORDER排序, 与在线加载时的顺序相同
+        return map;
+    }
+
+    private static TableMetadata tableOf(Map<String, TableMetadata> map, String key, String suffix) {
+        return map.computeIfAbsent(key.substring(0, key.length() - suffix.length()), k -> new TableMetadata());
+    }
+
+    public static void save(File file, Map<String, TableMetadata> snapshot) {
+        SortedMap<String, String> lines = new TreeMap<>();
+        for (Map.Entry<String, TableMetadata> entry : snapshot.entrySet()) {
+            String table = entry.getKey();
+            TableMetadata metadata = entry.getValue();
+            if (metadata.getFingerprint() != null) {
+                lines.put(table + FINGERPRINT, metadata.getFingerprint());
+            }
+            if (metadata.getComment() != null) {
+                lines.put(table + COMMENT, metadata.getComment());
+            }
+            if (metadata.getAutoIncrementColumnName() != null) {
+                lines.put(table + AUTO_INCREMENT, metadata.getAutoIncrementColumnName());
+            }
+            for (Map.Entry<String, Set<String>> uk : metadata.getUniqueKeys().entrySet()) {
+                lines.put(table + UNIQUE_KEY + uk.getKey(), String.join(",", uk.getValue()));
+            }
+            for (Map.Entry<String, Set<String>> index : metadata.getIndexes().entrySet()) {
+                lines.put(table + INDEX + index.getKey(), String.join(",", index.getValue()));
+            }
+        }
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new RuntimeException("创建目录失败: " + parent);
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> line : lines.entrySet()) {
+                writer.write(escape(line.getKey(), true));
+                writer.write('=');
+                writer.write(escape(line.getValue(), false));
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("保存元数据快照失败: " + file, e);
+        }
+    }
+
+    /**
+     * 按Properties#load()的规则转义, 与Properties#store()不同的是不转义非ASCII字符, 注释可以直接阅读
+     */
+    private static String escape(String s, boolean isKey) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '=':
+                case ':':
+                case '#':
+                case '!':
+                    sb.append('\\').append(c);
+                    break;
+                case ' ':
+                    if (isKey || i == 0) {
+                        sb.append('\\');
+                    }
+                    sb.append(c);
+                    break;
+                default:
+                    sb.append(c);
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+}
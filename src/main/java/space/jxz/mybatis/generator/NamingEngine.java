@@ -0,0 +1,87 @@
+package space.jxz.mybatis.generator;
+
+import org.mybatis.generator.config.DomainObjectRenamingRule;
+import org.mybatis.generator.config.TableConfiguration;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * 生成属性名和domainObjectName, 结果按名字缓存: 大量表中的同名列(id, create_time..)只转换一次, 并且共用同一个String.
+ * DomainObjectRenamingRule的正则表达式每个TableConfiguration只编译一次.
+ * 只在生成线程中使用, 不是线程安全的
+ */
+public class NamingEngine {
+
+    private final NamingStrategy strategy;
+
+    /**
+     * 计算domainObjectName前从表名中去掉的前缀, 比如 t_
+     */
+    private final List<String> stripPrefixes;
+
+    private final Map<String, String> propertyNames = new HashMap<>();
+
+    private final Map<String, String> classNames = new HashMap<>();
+
+    private final Map<TableConfiguration, Pattern> renamingPatterns = new IdentityHashMap<>();
+
+    private long lookups;
+
+    public NamingEngine(NamingStrategy strategy, List<String> stripPrefixes) {
+        this.strategy = strategy;
+        this.stripPrefixes = stripPrefixes;
+    }
+
+    /**
+     * @param stripPrefixes 逗号分隔的前缀, 可以为null
+     */
+    public static NamingEngine of(String strategy, String stripPrefixes) {
+        List<String> prefixes = new ArrayList<>();
+        if (stripPrefixes != null) {
+            for (String prefix : stripPrefixes.split(",")) {
+                if (!prefix.trim().isEmpty()) {
+                    prefixes.add(prefix.trim());
+                }
+            }
+        }
+        return new NamingEngine(NamingStrategy.of(strategy), prefixes);
+    }
+
+    /**
+     * 列名对应的属性名
+     */
+    public String getPropertyName(String columnName) {
+        lookups++;
+        return propertyNames.computeIfAbsent(columnName, name -> strategy.toCamelCase(name, false));
+    }
+
+    /**
+     * 表名对应的domainObjectName: 去掉前缀, 转换为首字母大写的驼峰, 再应用tc中的DomainObjectRenamingRule
+     */
+    public String getDomainObjectName(String tableName, TableConfiguration tc) {
+        lookups++;
+        String className = classNames.computeIfAbsent(tableName, name -> strategy.toCamelCase(stripPrefix(name), true));
+        DomainObjectRenamingRule rule = tc.getDomainObjectRenamingRule();
+        if (rule == null) {
+            return className;
+        }
+        Pattern pattern = renamingPatterns.computeIfAbsent(tc, k -> Pattern.compile(rule.getSearchString()));
+        String replaceString = rule.getReplaceString() == null ? "" : rule.getReplaceString();
+        return pattern.matcher(className).replaceAll(replaceString);
+    }
+
+    private String stripPrefix(String tableName) {
+        for (String prefix : stripPrefixes) {
+            if (tableName.length() > prefix.length() && tableName.startsWith(prefix)) {
+                return tableName.substring(prefix.length());
+            }
+        }
+        return tableName;
+    }
+
+    public String report() {
+        return String.format("naming: lookups=%d, property names=%d, class names=%d, renaming patterns=%d",
+                lookups, propertyNames.size(), classNames.size(), renamingPatterns.size());
+    }
+}
@@ -0,0 +1,33 @@
+package space.jxz.mybatis.generator;
+
+import org.mybatis.generator.internal.ObjectFactory;
+import org.mybatis.generator.internal.util.JavaBeansUtil;
+
+/**
+ * 表名/列名转换为驼峰命名的规则, 由插件属性namingStrategy指定:
+ * reserveCase(默认, 保留原本的大小写), snake(MBG默认的规则, 其他字符都变为小写), 或者实现了此接口的类的全名
+ */
+public interface NamingStrategy {
+
+    /**
+     * 特殊字符变驼峰, 保留其他字符原本的大小写, 比如 "xxx_userName" -> "xxxUserName"
+     */
+    NamingStrategy RESERVE_CASE = PluginUtils::getCamelCaseStringReserveCase;
+
+    /**
+     * 与MBG相同, 比如 "xxx_userName" -> "xxxUsername"
+     */
+    NamingStrategy SNAKE = JavaBeansUtil::getCamelCaseString;
+
+    String toCamelCase(String name, boolean firstCharacterUppercase);
+
+    static NamingStrategy of(String name) {
+        if (name == null || name.isEmpty() || "reserveCase".equals(name)) {
+            return RESERVE_CASE;
+        }
+        if ("snake".equals(name)) {
+            return SNAKE;
+        }
+        return (NamingStrategy) ObjectFactory.createExternalObject(name);
+    }
+}
@@ -1,6 +1,8 @@
 package space.jxz.mybatis.generator;
 
 import org.mybatis.generator.api.FullyQualifiedTable;
+import org.mybatis.generator.api.GeneratedJavaFile;
+import org.mybatis.generator.api.GeneratedXmlFile;
 import org.mybatis.generator.api.IntrospectedColumn;
 import org.mybatis.generator.api.IntrospectedTable;
 import org.mybatis.generator.api.dom.OutputUtilities;
@@ -8,17 +10,47 @@ import org.mybatis.generator.api.dom.java.*;
 import org.mybatis.generator.api.dom.xml.*;
 import org.mybatis.generator.codegen.mybatis3.MyBatis3FormattingUtilities;
 import org.mybatis.generator.config.*;
+import org.mybatis.generator.internal.rules.Rules;
+import org.mybatis.generator.internal.util.JavaBeansUtil;
 import org.mybatis.generator.internal.util.StringUtility;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.TreeMap;
 
 import static org.mybatis.generator.internal.util.StringUtility.*;
 
 public class Plugin extends PluginAdapterEx {
+    private static final int DEFAULT_BATCH_MAX_ROWS = 500;
+
+    /**
+     * MySQL一条预编译语句最多65535个占位符 (useServerPrepStmts时由服务端检查)
+     */
+    private static final int MAX_PLACEHOLDERS = 65535;
+
+    private static final String PROJECTION_PROPERTY_PREFIX = "projection.";
+
+    private static final String CACHE_PROPERTY_PREFIX = "cache.";
+
+    private static final int DEFAULT_BATCH_WRITER_FLUSH_SIZE = 1000;
+
+    private static final int DEFAULT_BATCH_WRITER_FLUSH_INTERVAL_MILLIS = 1000;
+
+    private static final int DEFAULT_ASYNC_MAPPER_MAX_CONCURRENCY = 16;
+
+    private static final String DEFAULT_INCREMENTAL_MANIFEST_FILE = "target/mybatis-generator-incremental.properties";
+
     public boolean validate(List<String> warnings) {
         return true;
     }
@@ -33,11 +65,97 @@ public class Plugin extends PluginAdapterEx {
         generatedKeyForAllTable,
         retainFirstTable,
         columnNameRule2,
-        domainObjectNameRule2
+        domainObjectNameRule2,
+        keysetPagination,
+        bindLimitAndOffset,
+        batchInsertOrUpdate,
+        incrementalGenerate,
+        batchUpdate,
+        selectByPrimaryKeys,
+        streamingSelect,
+        increment,
+        batchWriter,
+        asyncMapper,
+        notNullPrimitive,
+        immutableModel,
+        queryHints
     }
 
+    /**
+     * 只在插件级别生效的功能, &lt;table&gt;中的同名property不会覆盖它们
+     */
+    private static final Set<FunctionNames> CONTEXT_FUNCTIONS =
+            Collections.unmodifiableSet(EnumSet.of(FunctionNames.retainFirstTable, FunctionNames.incrementalGenerate));
+
+    /**
+     * 插件级别打开的功能, 第一次使用时从properties解析
+     */
+    private Set<FunctionNames> defaultFunctions;
+
+    /**
+     * 每个&lt;table&gt;配置打开的功能: 插件级别的配置, 再用&lt;table&gt;中同名的&lt;property&gt;覆盖
+     */
+    private final Map<TableConfiguration, Set<FunctionNames>> tableFunctions = new IdentityHashMap<>();
+
+    /**
+     * 插件级别的配置, 用于不属于某张表的功能
+     */
     public boolean isFunctionOpen(FunctionNames functionName) {
-        return StringUtility.isTrue(properties.getProperty(functionName.name()));
+        return getDefaultFunctions().contains(functionName);
+    }
+
+    /**
+     * 表的配置, 比如只为访问频繁的表打开insertOrUpdate:
+     * &lt;table tableName="t_hot"&gt;&lt;property name="insertOrUpdate" value="true" /&gt;&lt;/table&gt;
+     */
+    public boolean isFunctionOpen(FunctionNames functionName, IntrospectedTable introspectedTable) {
+        return getTableFunctions(introspectedTable.getTableConfiguration()).contains(functionName);
+    }
+
+    private Set<FunctionNames> getDefaultFunctions() {
+        if (defaultFunctions == null) {
+            Set<FunctionNames> functions = EnumSet.noneOf(FunctionNames.class);
+            for (FunctionNames functionName : FunctionNames.values()) {
+                if (StringUtility.isTrue(properties.getProperty(functionName.name()))) {
+                    functions.add(functionName);
+                }
+            }
+            defaultFunctions = Collections.unmodifiableSet(functions);
+        }
+        return defaultFunctions;
+    }
+
+    private Set<FunctionNames> getTableFunctions(TableConfiguration tc) {
+        return tableFunctions.computeIfAbsent(tc, k -> {
+            Set<FunctionNames> functions = EnumSet.noneOf(FunctionNames.class);
+            functions.addAll(getDefaultFunctions());
+            for (FunctionNames functionName : FunctionNames.values()) {
+                String value = tc.getProperty(functionName.name());
+                if (value == null || CONTEXT_FUNCTIONS.contains(functionName)) {
+                    continue;
+                }
+                if (StringUtility.isTrue(value)) {
+                    functions.add(functionName);
+                } else {
+                    functions.remove(functionName);
+                }
+            }
+            return Collections.unmodifiableSet(functions);
+        });
+    }
+
+    // 在生成之前解析所有表的功能配置, 之后的hook中只需要查找
+    private void resolveTableFunctions() {
+        int overridden = 0;
+        for (IntrospectedTable introspectedTable : getIntrospectTables()) {
+            TableConfiguration tc = introspectedTable.getTableConfiguration();
+            if (!tableFunctions.containsKey(tc) && !getTableFunctions(tc).equals(getDefaultFunctions())) {
+                overridden++;
+            }
+        }
+        if (overridden > 0) {
+            System.out.println(String.format("INFO : %d 个<table>配置覆盖了插件的功能配置", overridden));
+        }
     }
 
     @Override
@@ -45,26 +163,182 @@ public class Plugin extends PluginAdapterEx {
         if (isFunctionOpen(FunctionNames.retainFirstTable)) {
             retainFirstIntrospectedTable();
         }
-        if (isFunctionOpen(FunctionNames.generatedKeyForAllTable)) {
-            generatedKeyForAllTable();
+        resolveTableFunctions();
+        immutableModels();
+        generatedKeyForAllTable();
+        // 在generatedKeyForAllTable()之后, 自增列/generatedKey列不使用基本类型
+        notNullColumnsToPrimitive();
+        columnToCamelAndReserveCase();
+        domainObjectToCamelAndReserveCase();
+        // 放在最后, 指纹中需要包含前面的步骤对表的修改
+        if (isFunctionOpen(FunctionNames.incrementalGenerate)) {
+            incrementalGenerate();
+        }
+    }
+
+    @Override
+    public void afterGenerate() {
+        super.afterGenerate();
+        // columnToCamelAndReserveCase()总是会创建namingEngine, 只在配置了命名规则时输出统计
+        if (namingEngine != null && isNamingConfigured()) {
+            System.out.println("INFO : " + namingEngine.report());
+        }
+        if (incrementalManifest != null) {
+            savePendingIncrementalManifest();
+        }
+    }
+
+    /**
+     * 本次运行所有表的指纹, 生成结束后写入待确认的清单文件
+     */
+    private Properties incrementalManifest;
+
+    /**
+     * 本次运行重新生成的表的mapper xml, key:table key, value:文件的绝对路径
+     */
+    private final Map<String, String> incrementalGeneratedFiles = new HashMap<>();
+
+    private long incrementalStartTime;
+
+    private File getIncrementalManifestFile() {
+        return new File(properties.getProperty("incrementalManifestFile", DEFAULT_INCREMENTAL_MANIFEST_FILE));
+    }
+
+    /**
+     * 插件最后被调用时MBG还没有写入任何文件, 而写文件之后不会再调用插件, 所以本次的指纹先写入这个文件,
+     * 下次运行时确认生成的文件已经写入后再合并到incrementalManifestFile中
+     */
+    private File getPendingIncrementalManifestFile() {
+        return new File(getIncrementalManifestFile().getPath() + ".pending");
+    }
+
+    /**
+     * 对比上次生成时保存的表结构指纹, 去掉没有变化的表, 只生成变化了的表.
+     * 生成的文件被手动删除/修改后, 需要删除incrementalManifestFile以重新生成所有表
+     */
+    public void incrementalGenerate() {
+        incrementalStartTime = System.currentTimeMillis();
+        File manifestFile = getIncrementalManifestFile();
+        Properties previous = loadIncrementalManifest(manifestFile);
+
+        File pendingFile = getPendingIncrementalManifestFile();
+        if (pendingFile.exists()) {
+            previous = confirmPendingIncrementalManifest(loadIncrementalManifest(pendingFile));
+            storeIncrementalManifest(manifestFile, previous);
+            if (!pendingFile.delete()) {
+                throw new RuntimeException("删除文件失败: " + pendingFile);
+            }
+        }
+
+        incrementalManifest = new Properties();
+        int total = getIntrospectTables().size();
+        int removed = removeUnchangedIntrospectedTables(previous, incrementalManifest);
+        System.out.println(String.format("INFO : 增量生成, %d 张表中 %d 张表结构没有变化, 不会重新生成",
+                total, removed));
+    }
+
+    /**
+     * 上次运行重新生成的表, 只有mapper xml在那次运行开始之后被写入过才确认它的指纹, 否则(MBG写文件失败, 或者没有写文件)
+     * 不写入清单, 本次会重新生成. 没有生成mapper xml的表(比如只使用注解的mapper)无法确认, 直接使用它的指纹
+     */
+    private Properties confirmPendingIncrementalManifest(Properties pending) {
+        long startTime = Long.parseLong(pending.getProperty("startTime", "0"));
+        Properties confirmed = new Properties();
+        for (String name : pending.stringPropertyNames()) {
+            if (!name.startsWith("fingerprint.")) {
+                continue;
+            }
+            String tableKey = name.substring("fingerprint.".length());
+            String path = pending.getProperty("file." + tableKey);
+            // 文件系统的修改时间精度可能只有1-2秒; 文件不存在时lastModified()为0
+            if (path == null || new File(path).lastModified() >= startTime - 2000) {
+                confirmed.setProperty(tableKey, pending.getProperty(name));
+            } else {
+                System.out.println(String.format("INFO : 表 %s 上次生成的文件 %s 没有写入, 将重新生成", tableKey, path));
+            }
+        }
+        return confirmed;
+    }
+
+    private void savePendingIncrementalManifest() {
+        Properties pending = new Properties();
+        pending.setProperty("startTime", String.valueOf(incrementalStartTime));
+        for (String tableKey : incrementalManifest.stringPropertyNames()) {
+            pending.setProperty("fingerprint." + tableKey, incrementalManifest.getProperty(tableKey));
+        }
+        for (Map.Entry<String, String> entry : incrementalGeneratedFiles.entrySet()) {
+            pending.setProperty("file." + entry.getKey(), entry.getValue());
+        }
+        storeIncrementalManifest(getPendingIncrementalManifestFile(), pending);
+    }
+
+    private static Properties loadIncrementalManifest(File file) {
+        Properties properties = new Properties();
+        if (file.exists()) {
+            try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                throw new RuntimeException("读取增量生成清单失败: " + file, e);
+            }
+        }
+        return properties;
+    }
+
+    private static void storeIncrementalManifest(File file, Properties manifest) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new RuntimeException("创建目录失败: " + parent);
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            manifest.store(writer, "mybatis generator plugin: schema fingerprint of generated tables");
+        } catch (IOException e) {
+            throw new RuntimeException("保存增量生成清单失败: " + file, e);
         }
-        if (isFunctionOpen(FunctionNames.columnNameRule2)) {
-            columnToCamelAndReserveCase();
+    }
+
+    @Override
+    public boolean sqlMapGenerated(GeneratedXmlFile sqlMap, IntrospectedTable introspectedTable) {
+        if (incrementalManifest != null) {
+            // 与DefaultShellCallback#getDirectory()计算的路径一致
+            File directory = new File(sqlMap.getTargetProject(),
+                    sqlMap.getTargetPackage().replace('.', File.separatorChar));
+            incrementalGeneratedFiles.put(getTableKey(introspectedTable),
+                    new File(directory, sqlMap.getFileName()).getAbsolutePath());
         }
-        if (isFunctionOpen(FunctionNames.domainObjectNameRule2)) {
-            domainObjectToCamelAndReserveCase();
+        return super.sqlMapGenerated(sqlMap, introspectedTable);
+    }
+
+    /**
+     * columnNameRule2和domainObjectNameRule2使用的命名规则, 由namingStrategy和namingStripPrefix配置
+     */
+    private NamingEngine namingEngine;
+
+    public NamingEngine getNamingEngine() {
+        if (namingEngine == null) {
+            namingEngine = NamingEngine.of(properties.getProperty("namingStrategy"),
+                    properties.getProperty("namingStripPrefix"));
         }
+        return namingEngine;
+    }
+
+    private boolean isNamingConfigured() {
+        return StringUtility.stringHasValue(properties.getProperty("namingStrategy"))
+                || StringUtility.stringHasValue(properties.getProperty("namingStripPrefix"));
     }
 
     public void columnToCamelAndReserveCase() {
+        NamingEngine naming = getNamingEngine();
         for (IntrospectedTable introspectedTable : getIntrospectTables()) {
+            if (!isFunctionOpen(FunctionNames.columnNameRule2, introspectedTable)) {
+                continue;
+            }
+            TableConfiguration tc = introspectedTable.getTableConfiguration();
+            boolean hasColumnOverrides = !tc.getColumnOverrides().isEmpty();
             for (IntrospectedColumn introspectedColumn : introspectedTable.getAllColumns()) {
-                TableConfiguration tc = introspectedTable.getTableConfiguration();
-                ColumnOverride columnOverride = tc.getColumnOverride(
-                        introspectedColumn.getActualColumnName());
+                ColumnOverride columnOverride = hasColumnOverrides
+                        ? tc.getColumnOverride(introspectedColumn.getActualColumnName()) : null;
                 if (columnOverride == null || !stringHasValue(columnOverride.getJavaProperty())) {
-                    introspectedColumn.setJavaProperty(PluginUtils.getCamelCaseStringReserveCase(
-                            introspectedColumn.getActualColumnName(), false));
+                    introspectedColumn.setJavaProperty(naming.getPropertyName(introspectedColumn.getActualColumnName()));
                 }
             }
         }
@@ -72,6 +346,9 @@ public class Plugin extends PluginAdapterEx {
 
     public void domainObjectToCamelAndReserveCase() {
         for (IntrospectedTable introspectedTable : getIntrospectTables()) {
+            if (!isFunctionOpen(FunctionNames.domainObjectNameRule2, introspectedTable)) {
+                continue;
+            }
             TableConfiguration tc = introspectedTable.getTableConfiguration();
             boolean delimitIdentifiers = tc.isDelimitIdentifiers()
                     || stringContainsSpace(tc.getCatalog())
@@ -114,28 +391,85 @@ public class Plugin extends PluginAdapterEx {
         }
 
         String runtimeTableName = tc.getProperty(PropertyRegistry.TABLE_RUNTIME_TABLE_NAME);
-        String finalDomainObjectName;
-        if (stringHasValue(runtimeTableName)) {
-            finalDomainObjectName =  PluginUtils.getCamelCaseStringReserveCase(
-                    runtimeTableName, true);
-        } else {
-            finalDomainObjectName =  PluginUtils.getCamelCaseStringReserveCase(
-                    fullyQualifiedTable.getIntrospectedTableName(), true);
+        return getNamingEngine().getDomainObjectName(stringHasValue(runtimeTableName)
+                ? runtimeTableName : fullyQualifiedTable.getIntrospectedTableName(), tc);
+    }
+
+
+    /**
+     * NOT NULL的数值列和布尔列使用基本类型(int, long, boolean..), 查询结果不需要为每个字段创建包装类对象.
+     * 自增列, generatedKey列, sequence列, generated always列和有默认值的列需要用null表示"由数据库生成/使用默认值",
+     * 仍然使用包装类, 否则selective的insert会用Java的默认值0/false覆盖数据库的默认值;
+     * columnOverride中指定了javaType的列不修改
+     */
+    public void notNullColumnsToPrimitive() {
+        for (IntrospectedTable introspectedTable : getIntrospectTables()) {
+            if (!isFunctionOpen(FunctionNames.notNullPrimitive, introspectedTable)) {
+                continue;
+            }
+            TableConfiguration tc = introspectedTable.getTableConfiguration();
+            String generatedKeyColumn = tc.getGeneratedKey() == null ? null : tc.getGeneratedKey().getColumn();
+            for (IntrospectedColumn introspectedColumn : introspectedTable.getAllColumns()) {
+                if (introspectedColumn.isNullable()
+                        || introspectedColumn.isIdentity()
+                        || introspectedColumn.isAutoIncrement()
+                        || introspectedColumn.isSequenceColumn()
+                        || introspectedColumn.isGeneratedAlways()
+                        || introspectedColumn.getDefaultValue() != null
+                        || introspectedColumn.getActualColumnName().equalsIgnoreCase(generatedKeyColumn)) {
+                    continue;
+                }
+                ColumnOverride columnOverride = tc.getColumnOverride(introspectedColumn.getActualColumnName());
+                if (columnOverride != null && stringHasValue(columnOverride.getJavaType())) {
+                    continue;
+                }
+                FullyQualifiedJavaType primitiveType =
+                        getPrimitiveType(introspectedColumn.getFullyQualifiedJavaType().getFullyQualifiedName());
+                if (primitiveType != null) {
+                    introspectedColumn.setFullyQualifiedJavaType(primitiveType);
+                }
+            }
         }
-        DomainObjectRenamingRule domainObjectRenamingRule = tc.getDomainObjectRenamingRule();
-        if (domainObjectRenamingRule != null) {
-            Pattern pattern = Pattern.compile(domainObjectRenamingRule.getSearchString());
-            String replaceString = domainObjectRenamingRule.getReplaceString();
-            replaceString = replaceString == null ? "" : replaceString; //$NON-NLS-1$
-            Matcher matcher = pattern.matcher(finalDomainObjectName);
-            finalDomainObjectName = matcher.replaceAll(replaceString);
+    }
+
+    private static FullyQualifiedJavaType getPrimitiveType(String wrapperType) {
+        switch (wrapperType) {
+            case "java.lang.Boolean":
+                return FullyQualifiedJavaType.getBooleanPrimitiveInstance();
+            case "java.lang.Byte":
+                return new FullyQualifiedJavaType("byte");
+            case "java.lang.Short":
+                return new FullyQualifiedJavaType("short");
+            case "java.lang.Integer":
+                return FullyQualifiedJavaType.getIntInstance();
+            case "java.lang.Long":
+                return new FullyQualifiedJavaType("long");
+            case "java.lang.Float":
+                return new FullyQualifiedJavaType("float");
+            case "java.lang.Double":
+                return new FullyQualifiedJavaType("double");
+            default:
+                return null;
         }
-        return finalDomainObjectName;
     }
 
+    /**
+     * 打开immutableModel的表使用MBG的immutable模型: 只有全参构造方法和getter, resultMap使用&lt;constructor&gt;,
+     * 查询结果直接通过构造方法创建, 不需要先调用无参构造方法再逐个反射调用setter
+     */
+    public void immutableModels() {
+        for (IntrospectedTable introspectedTable : getIntrospectTables()) {
+            if (isFunctionOpen(FunctionNames.immutableModel, introspectedTable)) {
+                introspectedTable.getTableConfiguration().addProperty(PropertyRegistry.ANY_IMMUTABLE, "true");
+            }
+        }
+    }
 
     public void generatedKeyForAllTable() {
         for (IntrospectedTable introspectedTable : getIntrospectTables()) {
+            if (!isFunctionOpen(FunctionNames.generatedKeyForAllTable, introspectedTable)) {
+                continue;
+            }
             TableConfiguration tc = introspectedTable.getTableConfiguration();
             if (tc.getGeneratedKey() == null) {
                 String column = getAutoIncrementColumnName(introspectedTable);
@@ -159,25 +493,49 @@ public class Plugin extends PluginAdapterEx {
     @Override
     public boolean modelBaseRecordClassGenerated(TopLevelClass topLevelClass,
                                                  IntrospectedTable introspectedTable) {
-        if (isFunctionOpen(FunctionNames.tableAndColumnComment)) {
+        if (isFunctionOpen(FunctionNames.tableAndColumnComment, introspectedTable)) {
             commentClass(topLevelClass, introspectedTable);
         }
+        if (isSerializedCache(introspectedTable)) {
+            makeSerializable(topLevelClass);
+        }
+        addConstructorBasedModelMethods(topLevelClass, introspectedTable);
         return true;
     }
 
     @Override
     public boolean modelPrimaryKeyClassGenerated(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
-        if (isFunctionOpen(FunctionNames.tableAndColumnComment)) {
+        if (isFunctionOpen(FunctionNames.tableAndColumnComment, introspectedTable)) {
             commentClass(topLevelClass, introspectedTable);
         }
+        if (isSerializedCache(introspectedTable)) {
+            makeSerializable(topLevelClass);
+        }
+        addConstructorBasedModelMethods(topLevelClass, introspectedTable);
         return true;
     }
 
     @Override
     public boolean modelRecordWithBLOBsClassGenerated(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
-        if (isFunctionOpen(FunctionNames.tableAndColumnComment)) {
+        if (isFunctionOpen(FunctionNames.tableAndColumnComment, introspectedTable)) {
             commentClass(topLevelClass, introspectedTable);
         }
+        if (isSerializedCache(introspectedTable)) {
+            makeSerializable(topLevelClass);
+        }
+        addConstructorBasedModelMethods(topLevelClass, introspectedTable);
+        return true;
+    }
+
+    @Override
+    public boolean sqlMapResultMapWithoutBLOBsElementGenerated(XmlElement element, IntrospectedTable introspectedTable) {
+        fixConstructorArgJavaTypes(element);
+        return true;
+    }
+
+    @Override
+    public boolean sqlMapResultMapWithBLOBsElementGenerated(XmlElement element, IntrospectedTable introspectedTable) {
+        fixConstructorArgJavaTypes(element);
         return true;
     }
 
@@ -189,10 +547,10 @@ public class Plugin extends PluginAdapterEx {
             IntrospectedColumn introspectedColumn,
             IntrospectedTable introspectedTable,
             ModelClassType modelClassType) {
-//        if (isFunctionOpen(FunctionNames.finalGetterSetter)) {
+//        if (isFunctionOpen(FunctionNames.finalGetterSetter, introspectedTable)) {
 //            holderField.setVisibility(JavaVisibility.PUBLIC);
 //        }
-        if (isFunctionOpen(FunctionNames.tableAndColumnComment)) {
+        if (isFunctionOpen(FunctionNames.tableAndColumnComment, introspectedTable)) {
             commentField(field, introspectedTable, introspectedColumn);
         }
         return true;
@@ -205,7 +563,7 @@ public class Plugin extends PluginAdapterEx {
             TopLevelClass topLevelClass, IntrospectedColumn introspectedColumn,
             IntrospectedTable introspectedTable,
             ModelClassType modelClassType) {
-        if (isFunctionOpen(FunctionNames.finalGetterSetter)) {
+        if (isFunctionOpen(FunctionNames.finalGetterSetter, introspectedTable)) {
             method.setFinal(true);
         }
         return true;
@@ -218,7 +576,7 @@ public class Plugin extends PluginAdapterEx {
             TopLevelClass topLevelClass, IntrospectedColumn introspectedColumn,
             IntrospectedTable introspectedTable,
             ModelClassType modelClassType) {
-        if (isFunctionOpen(FunctionNames.finalGetterSetter)) {
+        if (isFunctionOpen(FunctionNames.finalGetterSetter, introspectedTable)) {
             method.setFinal(true);
         }
         return true;
@@ -228,7 +586,7 @@ public class Plugin extends PluginAdapterEx {
     @Override
     public boolean modelExampleClassGenerated(
             TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
-        if (isFunctionOpen(FunctionNames.limitAndOffset)) {
+        if (isFunctionOpen(FunctionNames.limitAndOffset, introspectedTable)) {
             Field limit = new Field();
             limit.setName("limit");
             limit.setVisibility(JavaVisibility.PROTECTED);
@@ -277,15 +635,124 @@ public class Plugin extends PluginAdapterEx {
             topLevelClass.addMethod(setOffset);
             context.getCommentGenerator().addGeneralMethodComment(setOffset, introspectedTable);
         }
+        if (isFunctionOpen(FunctionNames.queryHints, introspectedTable)) {
+            addQueryHintsToExample(topLevelClass, introspectedTable);
+        }
         return true;
     }
 
+    /**
+     * add indexHint/optimizerHints related fields and methods into Example:
+     * useIndex()/forceIndex()/ignoreIndex()只接受生成时表上存在的索引名, 渲染时不需要担心sql注入;
+     * optimizerHints原样放进 /*+ .. 注释中, 不能包含注释结束符
+     */
+    private void addQueryHintsToExample(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
+        FullyQualifiedJavaType stringType = FullyQualifiedJavaType.getStringInstance();
+        FullyQualifiedJavaType setType = new FullyQualifiedJavaType("java.util.Set");
+        setType.addTypeArgument(stringType);
+        topLevelClass.addImportedType(new FullyQualifiedJavaType("java.util.Set"));
+        topLevelClass.addImportedType(new FullyQualifiedJavaType("java.util.HashSet"));
+
+        List<String> indexNames = new ArrayList<>(getUniqueKeys(introspectedTable).keySet());
+        indexNames.addAll(getIndexes(introspectedTable).keySet());
+        StringBuilder literals = new StringBuilder();
+        for (String indexName : indexNames) {
+            if (literals.length() > 0) {
+                literals.append(", ");
+            }
+            literals.append('"').append(indexName.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        Field indexNamesField = new Field("INDEX_NAMES", setType);
+        indexNamesField.setVisibility(JavaVisibility.PRIVATE);
+        indexNamesField.setStatic(true);
+        indexNamesField.setFinal(true);
+        if (indexNames.isEmpty()) {
+            indexNamesField.setInitializationString("new HashSet<String>()");
+        } else {
+            topLevelClass.addImportedType(new FullyQualifiedJavaType("java.util.Arrays"));
+            indexNamesField.setInitializationString(
+                    String.format("new HashSet<String>(Arrays.asList(%s))", literals));
+        }
+        topLevelClass.addField(indexNamesField);
+        context.getCommentGenerator().addFieldComment(indexNamesField, introspectedTable);
+
+        Field indexHint = new Field("indexHint", stringType);
+        indexHint.setVisibility(JavaVisibility.PROTECTED);
+        topLevelClass.addField(indexHint);
+        context.getCommentGenerator().addFieldComment(indexHint, introspectedTable);
+
+        Field optimizerHints = new Field("optimizerHints", stringType);
+        optimizerHints.setVisibility(JavaVisibility.PROTECTED);
+        topLevelClass.addField(optimizerHints);
+        context.getCommentGenerator().addFieldComment(optimizerHints, introspectedTable);
+
+        Method getIndexHint = new Method("getIndexHint");
+        getIndexHint.setVisibility(JavaVisibility.PUBLIC);
+        getIndexHint.setReturnType(stringType);
+        getIndexHint.addBodyLine("return indexHint;");
+        topLevelClass.addMethod(getIndexHint);
+        context.getCommentGenerator().addGeneralMethodComment(getIndexHint, introspectedTable);
+
+        for (String hintType : new String[]{"use", "force", "ignore"}) {
+            Method method = new Method(hintType + "Index");
+            method.setVisibility(JavaVisibility.PUBLIC);
+            Parameter parameter = new Parameter(stringType, "indexNames", true);
+            method.addParameter(parameter);
+            method.addBodyLine(String.format("this.indexHint = buildIndexHint(\"%s index\", indexNames);", hintType));
+            topLevelClass.addMethod(method);
+            context.getCommentGenerator().addGeneralMethodComment(method, introspectedTable);
+        }
+
+        Method buildIndexHint = new Method("buildIndexHint");
+        buildIndexHint.setVisibility(JavaVisibility.PROTECTED);
+        buildIndexHint.setReturnType(stringType);
+        buildIndexHint.addParameter(new Parameter(stringType, "type"));
+        buildIndexHint.addParameter(new Parameter(stringType, "indexNames", true));
+        buildIndexHint.addBodyLine("if (indexNames.length == 0) {");
+        buildIndexHint.addBodyLine("throw new IllegalArgumentException(\"indexNames cannot be empty\");");
+        buildIndexHint.addBodyLine("}");
+        buildIndexHint.addBodyLine("StringBuilder sb = new StringBuilder(type).append(\" (\");");
+        buildIndexHint.addBodyLine("for (int i = 0; i < indexNames.length; i++) {");
+        buildIndexHint.addBodyLine("if (!INDEX_NAMES.contains(indexNames[i])) {");
+        buildIndexHint.addBodyLine(String.format("throw new IllegalArgumentException(\"Unknown index \" + indexNames[i] + \" of table %s, "
+                + "known indexes: \" + INDEX_NAMES);", introspectedTable.getFullyQualifiedTableNameAtRuntime()));
+        buildIndexHint.addBodyLine("}");
+        buildIndexHint.addBodyLine("if (i > 0) {");
+        buildIndexHint.addBodyLine("sb.append(\", \");");
+        buildIndexHint.addBodyLine("}");
+        buildIndexHint.addBodyLine("sb.append('`').append(indexNames[i].replace(\"`\", \"``\")).append('`');");
+        buildIndexHint.addBodyLine("}");
+        buildIndexHint.addBodyLine("return sb.append(')').toString();");
+        topLevelClass.addMethod(buildIndexHint);
+        context.getCommentGenerator().addGeneralMethodComment(buildIndexHint, introspectedTable);
+
+        Method getOptimizerHints = new Method("getOptimizerHints");
+        getOptimizerHints.setVisibility(JavaVisibility.PUBLIC);
+        getOptimizerHints.setReturnType(stringType);
+        getOptimizerHints.addBodyLine("return optimizerHints;");
+        topLevelClass.addMethod(getOptimizerHints);
+        context.getCommentGenerator().addGeneralMethodComment(getOptimizerHints, introspectedTable);
+
+        Method setOptimizerHints = new Method("setOptimizerHints");
+        setOptimizerHints.setVisibility(JavaVisibility.PUBLIC);
+        setOptimizerHints.addParameter(new Parameter(stringType, "optimizerHints"));
+        setOptimizerHints.addBodyLine("if (optimizerHints != null && optimizerHints.contains(\"*/\")) {");
+        setOptimizerHints.addBodyLine("throw new IllegalArgumentException(\"optimizerHints cannot contain */\");");
+        setOptimizerHints.addBodyLine("}");
+        setOptimizerHints.addBodyLine("this.optimizerHints = optimizerHints;");
+        topLevelClass.addMethod(setOptimizerHints);
+        context.getCommentGenerator().addGeneralMethodComment(setOptimizerHints, introspectedTable);
+    }
+
     // add limit-and-offset-related sql part into selectByExample()
     @Override
     public boolean sqlMapSelectByExampleWithoutBLOBsElementGenerated(
             XmlElement element, IntrospectedTable introspectedTable) {
-        if (isFunctionOpen(FunctionNames.limitAndOffset)) {
-            element.addElement(getLimitOffsetClauseElement(null));
+        if (isFunctionOpen(FunctionNames.limitAndOffset, introspectedTable)) {
+            element.addElement(getLimitOffsetClauseElement(null, introspectedTable));
+        }
+        if (isFunctionOpen(FunctionNames.queryHints, introspectedTable)) {
+            addQueryHintElements(element, "", true, introspectedTable);
         }
         return true;
     }
@@ -294,8 +761,20 @@ public class Plugin extends PluginAdapterEx {
     @Override
     public boolean sqlMapSelectByExampleWithBLOBsElementGenerated(
             XmlElement element, IntrospectedTable introspectedTable) {
-        if (isFunctionOpen(FunctionNames.limitAndOffset)) {
-            element.addElement(getLimitOffsetClauseElement(null));
+        if (isFunctionOpen(FunctionNames.limitAndOffset, introspectedTable)) {
+            element.addElement(getLimitOffsetClauseElement(null, introspectedTable));
+        }
+        if (isFunctionOpen(FunctionNames.queryHints, introspectedTable)) {
+            addQueryHintElements(element, "", true, introspectedTable);
+        }
+        return true;
+    }
+
+    // add hint-related sql part into countByExample()
+    @Override
+    public boolean sqlMapCountByExampleElementGenerated(XmlElement element, IntrospectedTable introspectedTable) {
+        if (isFunctionOpen(FunctionNames.queryHints, introspectedTable)) {
+            addQueryHintElements(element, "", true, introspectedTable);
         }
         return true;
     }
@@ -304,12 +783,71 @@ public class Plugin extends PluginAdapterEx {
     @Override
     public boolean sqlMapDeleteByExampleElementGenerated(
             XmlElement element, IntrospectedTable introspectedTable) {
-        if (isFunctionOpen(FunctionNames.limitAndOffset)) {
-            element.addElement(getLimitClauseElement(null));
+        if (isFunctionOpen(FunctionNames.limitAndOffset, introspectedTable)) {
+            element.addElement(getLimitClauseElement(null, introspectedTable));
+        }
+        // MySQL的单表delete不支持索引提示, 只加优化器提示
+        if (isFunctionOpen(FunctionNames.queryHints, introspectedTable)) {
+            addQueryHintElements(element, "", false, introspectedTable);
         }
         return true;
     }
 
+    /**
+     * 在语句开头的关键字(select/update/delete)后加上优化器提示, 在表名后加上索引提示, 比如:
+     * <pre>
+     * select /*+ MAX_EXECUTION_TIME(1000) *&#47; id, name from t_user force index (`idx_name`) where ..
+     * </pre>
+     */
+    private void addQueryHintElements(XmlElement element, String prefix, boolean withIndexHint,
+                                      IntrospectedTable introspectedTable) {
+        // 不使用suppressAllComments时, 语句开头是CommentGenerator#addComment()加的<!-- .. -->注释, 跳过
+        List<Element> elements = element.getElements();
+        int keywordIndex = 0;
+        while (keywordIndex < elements.size() && !isQueryKeywordElement(elements.get(keywordIndex))) {
+            keywordIndex++;
+        }
+        if (keywordIndex == elements.size()) {
+            return;
+        }
+        String content = ((TextElement) elements.get(keywordIndex)).getContent().trim();
+        int space = content.indexOf(' ');
+
+        XmlElement optimizerHints = new XmlElement("if");
+        optimizerHints.addAttribute(new Attribute("test", prefix + "optimizerHints != null"));
+        optimizerHints.addElement(new TextElement("/*+ ${" + prefix + "optimizerHints} */"));
+
+        elements.set(keywordIndex, new TextElement(space < 0 ? content : content.substring(0, space)));
+        elements.add(keywordIndex + 1, optimizerHints);
+        if (space >= 0) {
+            elements.add(keywordIndex + 2, new TextElement(content.substring(space + 1).trim()));
+        }
+        if (!withIndexHint) {
+            return;
+        }
+
+        // 索引提示放在 "from t_user" / "update t_user" 中的表名(包括别名)后面
+        String tableName = introspectedTable.getAliasedFullyQualifiedTableNameAtRuntime();
+        for (int i = keywordIndex + 1; i < elements.size(); i++) {
+            if (elements.get(i) instanceof TextElement
+                    && ((TextElement) elements.get(i)).getContent().trim().endsWith(tableName)) {
+                XmlElement indexHint = new XmlElement("if");
+                indexHint.addAttribute(new Attribute("test", prefix + "indexHint != null"));
+                indexHint.addElement(new TextElement("${" + prefix + "indexHint}"));
+                elements.add(i + 1, indexHint);
+                return;
+            }
+        }
+    }
+
+
+    private static boolean isQueryKeywordElement(Element element) {
+        if (!(element instanceof TextElement)) {
+            return false;
+        }
+        String content = ((TextElement) element).getContent().trim().toLowerCase();
+        return content.matches("(select|update|delete)(\\s.*)?");
+    }
 
     private boolean isGenarateComment() {
         String value = context.getCommentGeneratorConfiguration().getProperties().getProperty("suppressAllComments");
@@ -378,7 +916,7 @@ public class Plugin extends PluginAdapterEx {
     public boolean clientGenerated(
             Interface interfaze, TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
 
-        if (isFunctionOpen(FunctionNames.insertOrUpdate)) {
+        if (isFunctionOpen(FunctionNames.insertOrUpdate, introspectedTable)) {
             if (getUniqueKeys(introspectedTable).size() != 1) {
                 System.out.println(String.format("INFO : 表 %s 的 UniqueKey 数量不是1,"
                                 + "不会生成insertOrUpdateByUniqueKey()和insertSelectiveOrUpdateByUniqueKeySelective()方法",
@@ -389,16 +927,87 @@ public class Plugin extends PluginAdapterEx {
             }
         }
 
-        if (isFunctionOpen(FunctionNames.manuallySelect)) {
+        if (isFunctionOpen(FunctionNames.batchInsertOrUpdate, introspectedTable)) {
+            if (getUniqueKeys(introspectedTable).size() != 1) {
+                System.out.println(String.format("INFO : 表 %s 的 UniqueKey 数量不是1,"
+                                + "不会生成batchInsertOrUpdateByUniqueKey()和batchInsertSelectiveOrUpdateByUniqueKeySelective()方法",
+                        introspectedTable.getFullyQualifiedTableNameAtRuntime()));
+            } else {
+                addBatchInsertOrUpdateByUniqueKeyMethod(interfaze, introspectedTable);
+                addBatchInsertSelectiveOrUpdateByUniqueKeySelectiveMethod(interfaze, introspectedTable);
+            }
+        }
+
+        if (isFunctionOpen(FunctionNames.batchUpdate, introspectedTable)) {
+            if (!introspectedTable.hasPrimaryKeyColumns() || introspectedTable.getNonPrimaryKeyColumns().isEmpty()) {
+                System.out.println(String.format("INFO : 表 %s 没有主键或没有非主键列,"
+                                + "不会生成batchUpdateByPrimaryKey()和batchUpdateByPrimaryKeySelective()方法",
+                        introspectedTable.getFullyQualifiedTableNameAtRuntime()));
+            } else {
+                addBatchUpdateByPrimaryKeyMethod(interfaze, introspectedTable, false);
+                addBatchUpdateByPrimaryKeyMethod(interfaze, introspectedTable, true);
+            }
+        }
+
+        if (isFunctionOpen(FunctionNames.manuallySelect, introspectedTable)) {
             addSelectManuallyByExampleMethod(interfaze, introspectedTable);
             addSelectManuallyByPrimaryKeyMethod(interfaze, introspectedTable);
         }
 
-        if (isFunctionOpen(FunctionNames.manuallyUpdate)) {
+        if (isFunctionOpen(FunctionNames.selectByPrimaryKeys, introspectedTable)) {
+            if (!introspectedTable.hasPrimaryKeyColumns()) {
+                System.out.println(String.format("INFO : 表 %s 没有主键,"
+                                + "不会生成selectByPrimaryKeys()和selectManuallyByPrimaryKeys()方法",
+                        introspectedTable.getFullyQualifiedTableNameAtRuntime()));
+            } else {
+                addSelectByPrimaryKeysMethod(interfaze, introspectedTable, false);
+                addSelectByPrimaryKeysMethod(interfaze, introspectedTable, true);
+            }
+        }
+
+        if (isFunctionOpen(FunctionNames.manuallyUpdate, introspectedTable)) {
             addUpdateManuallyByExampleMethod(interfaze, introspectedTable);
             addUpdateManuallyByPrimaryKeyMethod(interfaze, introspectedTable);
         }
 
+        if (isFunctionOpen(FunctionNames.keysetPagination, introspectedTable)) {
+            if (getKeysetColumns(introspectedTable).isEmpty()
+                    || !introspectedTable.getRules().generateMyBatis3UpdateByExampleWhereClause()) {
+                System.out.println(String.format("INFO : 表 %s 没有主键且 UniqueKey 数量不是1或UniqueKey中有可以为NULL的列"
+                                + "(或未生成Update_By_Example_Where_Clause), 不会生成selectByExampleAfterKey()方法",
+                        introspectedTable.getFullyQualifiedTableNameAtRuntime()));
+            } else {
+                addSelectByExampleAfterKeyMethod(interfaze, introspectedTable);
+            }
+        }
+
+        if (isFunctionOpen(FunctionNames.increment, introspectedTable)) {
+            if (getIncrementColumns(introspectedTable).isEmpty()) {
+                System.out.println(String.format("INFO : 表 %s 没有非主键的数值列,"
+                                + "不会生成incrementByPrimaryKey()和incrementByExample()方法",
+                        introspectedTable.getFullyQualifiedTableNameAtRuntime()));
+            } else {
+                addIncrementMethods(interfaze, introspectedTable);
+            }
+        }
+
+        addProjectionMethods(interfaze, introspectedTable);
+
+        if (isFunctionOpen(FunctionNames.streamingSelect, introspectedTable)) {
+            Rules rules = introspectedTable.getRules();
+            if (rules.generateSelectByExampleWithBLOBs() || rules.generateSelectByExampleWithoutBLOBs()) {
+                addStreamingSelectMethods(interfaze, introspectedTable, false);
+            }
+            if (isFunctionOpen(FunctionNames.manuallySelect, introspectedTable)) {
+                addStreamingSelectMethods(interfaze, introspectedTable, true);
+            }
+        }
+
+        // 最后生成, 包含上面添加的所有方法
+        if (isFunctionOpen(FunctionNames.asyncMapper, introspectedTable)) {
+            asyncMappers.put(getTableKey(introspectedTable), generateAsyncMapper(interfaze, introspectedTable));
+        }
+
         return true;
     }
 
@@ -407,7 +1016,11 @@ public class Plugin extends PluginAdapterEx {
     public boolean sqlMapDocumentGenerated(Document document, IntrospectedTable introspectedTable) {
         XmlElement root = document.getRootElement();
 
-        if (isFunctionOpen(FunctionNames.insertOrUpdate)) {
+        if (useManualResultMap(introspectedTable)) {
+            addManualResultMapElement(root, introspectedTable);
+        }
+
+        if (isFunctionOpen(FunctionNames.insertOrUpdate, introspectedTable)) {
             if (getUniqueKeys(introspectedTable).size() != 1) {
                 System.out.println(String.format("INFO : 表 %s 的 UniqueKey 数量不是1,"
                                 + "不会生成insertOrUpdateByUniqueKey()和insertSelectiveOrUpdateByUniqueKeySelective()方法",
@@ -418,16 +1031,89 @@ public class Plugin extends PluginAdapterEx {
             }
         }
 
-        if (isFunctionOpen(FunctionNames.manuallySelect)) {
+        if (isFunctionOpen(FunctionNames.batchInsertOrUpdate, introspectedTable)) {
+            if (getUniqueKeys(introspectedTable).size() != 1) {
+                System.out.println(String.format("INFO : 表 %s 的 UniqueKey 数量不是1,"
+                                + "不会生成batchInsertOrUpdateByUniqueKey()和batchInsertSelectiveOrUpdateByUniqueKeySelective()方法",
+                        introspectedTable.getFullyQualifiedTableNameAtRuntime()));
+            } else {
+                addBatchInsertOrUpdateByUniqueKeyElement(root, introspectedTable);
+                addBatchInsertSelectiveOrUpdateByUniqueKeySelectiveElement(root, introspectedTable);
+            }
+        }
+
+        if (isFunctionOpen(FunctionNames.batchUpdate, introspectedTable)) {
+            if (!introspectedTable.hasPrimaryKeyColumns() || introspectedTable.getNonPrimaryKeyColumns().isEmpty()) {
+                System.out.println(String.format("INFO : 表 %s 没有主键或没有非主键列,"
+                                + "不会生成batchUpdateByPrimaryKey()和batchUpdateByPrimaryKeySelective()方法",
+                        introspectedTable.getFullyQualifiedTableNameAtRuntime()));
+            } else {
+                addBatchUpdateByPrimaryKeyElement(root, introspectedTable, false);
+                addBatchUpdateByPrimaryKeyElement(root, introspectedTable, true);
+            }
+        }
+
+        if (isFunctionOpen(FunctionNames.manuallySelect, introspectedTable)) {
             addSelectManuallyByExampleElement(root, introspectedTable);
             addSelectManuallyByPrimaryKeyElement(root, introspectedTable);
         }
 
-        if (isFunctionOpen(FunctionNames.manuallyUpdate)) {
+        if (isFunctionOpen(FunctionNames.selectByPrimaryKeys, introspectedTable)) {
+            if (!introspectedTable.hasPrimaryKeyColumns()) {
+                System.out.println(String.format("INFO : 表 %s 没有主键,"
+                                + "不会生成selectByPrimaryKeys()和selectManuallyByPrimaryKeys()方法",
+                        introspectedTable.getFullyQualifiedTableNameAtRuntime()));
+            } else {
+                addSelectByPrimaryKeysElement(root, introspectedTable, false);
+                addSelectByPrimaryKeysElement(root, introspectedTable, true);
+            }
+        }
+
+        if (isFunctionOpen(FunctionNames.manuallyUpdate, introspectedTable)) {
             addUpdateManuallyByExampleElement(root, introspectedTable);
             addUpdateManuallyByPrimaryKeyElement(root, introspectedTable);
         }
 
+        if (isFunctionOpen(FunctionNames.keysetPagination, introspectedTable)) {
+            if (getKeysetColumns(introspectedTable).isEmpty()
+                    || !introspectedTable.getRules().generateMyBatis3UpdateByExampleWhereClause()) {
+                System.out.println(String.format("INFO : 表 %s 没有主键且 UniqueKey 数量不是1或UniqueKey中有可以为NULL的列"
+                                + "(或未生成Update_By_Example_Where_Clause), 不会生成selectByExampleAfterKey()方法",
+                        introspectedTable.getFullyQualifiedTableNameAtRuntime()));
+            } else {
+                addSelectByExampleAfterKeyElement(root, introspectedTable);
+            }
+        }
+
+        if (isFunctionOpen(FunctionNames.increment, introspectedTable)) {
+            if (getIncrementColumns(introspectedTable).isEmpty()) {
+                System.out.println(String.format("INFO : 表 %s 没有非主键的数值列,"
+                                + "不会生成incrementByPrimaryKey()和incrementByExample()方法",
+                        introspectedTable.getFullyQualifiedTableNameAtRuntime()));
+            } else {
+                addIncrementElements(root, introspectedTable);
+            }
+        }
+
+        addProjectionElements(root, introspectedTable);
+
+        // 放在最后, 需要复制上面生成的selectManuallyByExample
+        if (isFunctionOpen(FunctionNames.streamingSelect, introspectedTable)) {
+            Rules rules = introspectedTable.getRules();
+            if (rules.generateSelectByExampleWithBLOBs() || rules.generateSelectByExampleWithoutBLOBs()) {
+                addStreamingSelectElements(root, introspectedTable, false);
+            }
+            if (isFunctionOpen(FunctionNames.manuallySelect, introspectedTable)) {
+                addStreamingSelectElements(root, introspectedTable, true);
+            }
+        }
+
+        // 放在最后, 需要处理上面生成的所有语句
+        Map<String, String> cacheAttributes = getCacheAttributes(introspectedTable);
+        if (cacheAttributes != null) {
+            addCacheElement(root, introspectedTable, cacheAttributes);
+        }
+
         return true;
     }
 
@@ -463,7 +1149,7 @@ public class Plugin extends PluginAdapterEx {
         String gkActualColumnName = "";
         String updateGK = "";
         if (gk != null) {
-            IntrospectedColumn introspectedColumn = introspectedTable.getColumn(gk.getColumn());
+            IntrospectedColumn introspectedColumn = getGeneratedKeyColumn(introspectedTable);
             if (introspectedColumn != null) {
                 gkActualColumnName = introspectedColumn.getActualColumnName();
                 if (gk.isJdbcStandard()) {
@@ -592,23 +1278,61 @@ public class Plugin extends PluginAdapterEx {
         record.addAnnotation("@Param(\"record\")");
         method.addParameter(record);
 
+        if (hasPrimitiveColumn(introspectedTable)) {
+            // 基本类型的字段不能用null表示"不更新", 用columns指定on duplicate key update中更新哪些基本类型的字段
+            FullyQualifiedJavaType setType = new FullyQualifiedJavaType("java.util.Set");
+            setType.addTypeArgument(FullyQualifiedJavaType.getStringInstance());
+            interfaze.addImportedType(new FullyQualifiedJavaType("java.util.Set"));
+            Parameter columns = new Parameter(setType, "columns");
+            columns.addAnnotation("@Param(\"columns\")");
+            method.addParameter(columns);
+
+            // 不指定columns时不更新基本类型的字段
+            Method defaultMethod = new Method();
+            context.getCommentGenerator().addGeneralMethodComment(defaultMethod, introspectedTable);
+            defaultMethod.setName("insertSelectiveOrUpdateByUniqueKeySelective");
+            defaultMethod.setVisibility(JavaVisibility.PUBLIC);
+            defaultMethod.setDefault(true);
+            defaultMethod.setReturnType(FullyQualifiedJavaType.getIntInstance());
+            defaultMethod.addParameter(new Parameter(paramType, "record"));
+            defaultMethod.addBodyLine("return insertSelectiveOrUpdateByUniqueKeySelective(record, null);");
+            interfaze.addMethod(defaultMethod);
+        }
+
         interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.annotations.Param"));
         interfaze.addMethod(method);
     }
 
-    // add XML element for insertSelectiveOrUpdateByUniqueKeySelective()
-    private void addInsertSelectiveOrUpdateByUniqueKeySelectiveElement(XmlElement parent, IntrospectedTable introspectedTable) {
-        XmlElement element = new XmlElement("insert");
-        context.getCommentGenerator().addComment(element);
-
-        element.addAttribute(new Attribute("id", "insertSelectiveOrUpdateByUniqueKeySelective"));
-        element.addAttribute(new Attribute("parameterType", "map"));
+    private static boolean hasPrimitiveColumn(IntrospectedTable introspectedTable) {
+        for (IntrospectedColumn introspectedColumn : introspectedTable.getAllColumns()) {
+            if (introspectedColumn.getFullyQualifiedJavaType().isPrimitive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * columns.contains("x"), 用于按columns参数决定是否写入某列.
+     * OGNL中单引号的'x'是Character, 单个字母的属性名用单引号时永远不会匹配, 所以用双引号; MBG不转义属性值, 直接写成&amp;quot;
+     */
+    private static String getColumnsContainsTest(IntrospectedColumn introspectedColumn) {
+        return "columns.contains(&quot;" + introspectedColumn.getJavaProperty() + "&quot;)";
+    }
+
+    // add XML element for insertSelectiveOrUpdateByUniqueKeySelective()
+    private void addInsertSelectiveOrUpdateByUniqueKeySelectiveElement(XmlElement parent, IntrospectedTable introspectedTable) {
+        XmlElement element = new XmlElement("insert");
+        context.getCommentGenerator().addComment(element);
+
+        element.addAttribute(new Attribute("id", "insertSelectiveOrUpdateByUniqueKeySelective"));
+        element.addAttribute(new Attribute("parameterType", "map"));
 
         GeneratedKey gk = introspectedTable.getGeneratedKey();
         String updateGK = "";
         String gkActualColumnName = "";
         if (gk != null) {
-            IntrospectedColumn introspectedColumn = introspectedTable.getColumn(gk.getColumn());
+            IntrospectedColumn introspectedColumn = getGeneratedKeyColumn(introspectedTable);
             if (introspectedColumn != null) {
                 gkActualColumnName = introspectedColumn.getActualColumnName();
                 if (gk.isJdbcStandard()) {
@@ -677,12 +1401,24 @@ public class Plugin extends PluginAdapterEx {
                 if (!ukColumns.contains(introspectedColumn.getActualColumnName())
                         && !gkActualColumnName.equals(introspectedColumn.getActualColumnName())) {
                     sb.setLength(0);
-                    OutputUtilities.xmlIndent(sb, 1);
+                    sb.append(MyBatis3FormattingUtilities.getEscapedColumnName(introspectedColumn));
+                    sb.append(" = ");
                     sb.append(parameterClause.substring(0, 2));
                     sb.append("record.");
                     sb.append(parameterClause.substring(2));
                     sb.append(',');
-                    onDupClauseElements.add(new TextElement(sb.toString()));
+                    if (introspectedColumn.isSequenceColumn()) {
+                        StringBuilder indented = new StringBuilder();
+                        OutputUtilities.xmlIndent(indented, 1);
+                        onDupClauseElements.add(new TextElement(indented.append(sb).toString()));
+                    } else {
+                        // 基本类型的字段insert时总是写入, 但只有在columns中指定了才更新
+                        XmlElement updateIf = new XmlElement("if");
+                        updateIf.addAttribute(new Attribute("test",
+                                "columns != null and " + getColumnsContainsTest(introspectedColumn)));
+                        updateIf.addElement(new TextElement(sb.toString()));
+                        onDupClauseElements.add(updateIf);
+                    }
                 }
 
                 continue;
@@ -776,6 +1512,428 @@ public class Plugin extends PluginAdapterEx {
         parent.addElement(element);
     }
 
+    // add batchInsertOrUpdateByUniqueKey() and batchInsertOrUpdateByUniqueKeyChunk() methods
+    private void addBatchInsertOrUpdateByUniqueKeyMethod(Interface interfaze, IntrospectedTable introspectedTable) {
+        FullyQualifiedJavaType recordType = introspectedTable.getRules().calculateAllFieldsClass();
+        FullyQualifiedJavaType listType = FullyQualifiedJavaType.getNewListInstance();
+        listType.addTypeArgument(recordType);
+        interfaze.addImportedType(listType);
+        interfaze.addImportedType(recordType);
+
+        Method chunk = new Method();
+        context.getCommentGenerator().addGeneralMethodComment(chunk, introspectedTable);
+        chunk.setName("batchInsertOrUpdateByUniqueKeyChunk");
+        chunk.setVisibility(JavaVisibility.PUBLIC);
+        chunk.setReturnType(FullyQualifiedJavaType.getIntInstance());
+        Parameter records = new Parameter(listType, "records");
+        records.addAnnotation("@Param(\"records\")");
+        chunk.addParameter(records);
+        interfaze.addMethod(chunk);
+
+        Method method = new Method();
+        context.getCommentGenerator().addGeneralMethodComment(method, introspectedTable);
+        method.setName("batchInsertOrUpdateByUniqueKey");
+        method.setVisibility(JavaVisibility.PUBLIC);
+        method.setDefault(true);
+        method.setReturnType(FullyQualifiedJavaType.getIntInstance());
+        method.addParameter(new Parameter(listType, "records"));
+        addChunkedBodyLines(method, chunk.getName(), "",
+                getChunkSize("batchInsertOrUpdateMaxRows", introspectedTable,
+                        introspectedTable.getAllColumns().size()));
+        interfaze.addMethod(method);
+
+        interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.annotations.Param"));
+    }
+
+    // add XML element for batchInsertOrUpdateByUniqueKeyChunk()
+    private void addBatchInsertOrUpdateByUniqueKeyElement(XmlElement parent, IntrospectedTable introspectedTable) {
+        XmlElement element = new XmlElement("insert");
+        context.getCommentGenerator().addComment(element);
+
+        element.addAttribute(new Attribute("id", "batchInsertOrUpdateByUniqueKeyChunk"));
+        element.addAttribute(new Attribute("parameterType", "map"));
+
+        /**
+         * 多行insert .. on duplicate key update时mysql返回的自增值只对应第一行的insert, 不能可靠地回填到每个record中,
+         * 所以这里不使用useGeneratedKeys/selectKey, 也不需要单行版本中的 id = last_insert_id(id)
+         */
+        IntrospectedColumn gkColumn = getGeneratedKeyColumn(introspectedTable);
+        String gkActualColumnName = gkColumn == null ? "" : gkColumn.getActualColumnName();
+        Set<String> ukColumns = getUniqueKeys(introspectedTable).values().iterator().next();
+
+        StringBuilder insertClause = new StringBuilder();
+        StringBuilder valuesClause = new StringBuilder();
+        List<String> valuesClauses = new ArrayList<>();
+        List<String> updateClauses = new ArrayList<>();
+        String doNothingUpdateClause = null;
+
+        insertClause.append("insert into ")
+                .append(introspectedTable.getFullyQualifiedTableNameAtRuntime())
+                .append(" (");
+        valuesClause.append("(");
+
+        // 同insertOrUpdateByUniqueKey(), 不能去掉自增列
+        List<IntrospectedColumn> columns = introspectedTable.getAllColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            IntrospectedColumn introspectedColumn = columns.get(i);
+            String escapedColumnName = MyBatis3FormattingUtilities.getEscapedColumnName(introspectedColumn);
+
+            insertClause.append(escapedColumnName);
+            String parameterClause = MyBatis3FormattingUtilities.getParameterClause(introspectedColumn);
+            valuesClause.append(parameterClause.substring(0, 2))
+                    .append("record.")
+                    .append(parameterClause.substring(2));
+
+            if (!ukColumns.contains(introspectedColumn.getActualColumnName())
+                    && !gkActualColumnName.equals(introspectedColumn.getActualColumnName())) {
+                updateClauses.add(String.format("%s = values(%s)", escapedColumnName, escapedColumnName));
+            }
+
+            if (doNothingUpdateClause == null) {
+                doNothingUpdateClause = escapedColumnName + " = " + escapedColumnName;
+            }
+
+            if (i + 1 < columns.size()) {
+                insertClause.append(", ");
+                valuesClause.append(", ");
+            }
+
+            if (valuesClause.length() > 80) {
+                element.addElement(new TextElement(insertClause.toString()));
+                insertClause.setLength(0);
+                OutputUtilities.xmlIndent(insertClause, 1);
+
+                valuesClauses.add(valuesClause.toString());
+                valuesClause.setLength(0);
+            }
+        }
+
+        insertClause.append(')');
+        element.addElement(new TextElement(insertClause.toString()));
+
+        valuesClause.append(')');
+        valuesClauses.add(valuesClause.toString());
+
+        element.addElement(new TextElement("values"));
+        XmlElement foreach = new XmlElement("foreach");
+        foreach.addAttribute(new Attribute("collection", "records"));
+        foreach.addAttribute(new Attribute("item", "record"));
+        foreach.addAttribute(new Attribute("separator", ","));
+        for (String clause : valuesClauses) {
+            foreach.addElement(new TextElement(clause));
+        }
+        element.addElement(foreach);
+
+        element.addElement(new TextElement("on duplicate key update "));
+        if (updateClauses.isEmpty()) {
+            element.addElement(new TextElement("<!-- 确保on duplicate key update子句不为空， 避免sql语法错误 -->"));
+            element.addElement(new TextElement(doNothingUpdateClause));
+        }
+        for (int i = 0; i < updateClauses.size(); i++) {
+            StringBuilder sb = new StringBuilder();
+            OutputUtilities.xmlIndent(sb, 1);
+            sb.append(updateClauses.get(i));
+            if (i + 1 < updateClauses.size()) {
+                sb.append(',');
+            }
+            element.addElement(new TextElement(sb.toString()));
+        }
+
+        parent.addElement(element);
+    }
+
+    // add batchInsertSelectiveOrUpdateByUniqueKeySelective() and batchInsertSelectiveOrUpdateByUniqueKeySelectiveChunk() methods
+    private void addBatchInsertSelectiveOrUpdateByUniqueKeySelectiveMethod(Interface interfaze,
+                                                                          IntrospectedTable introspectedTable) {
+        FullyQualifiedJavaType recordType = introspectedTable.getRules().calculateAllFieldsClass();
+        FullyQualifiedJavaType listType = FullyQualifiedJavaType.getNewListInstance();
+        listType.addTypeArgument(recordType);
+        FullyQualifiedJavaType setType = new FullyQualifiedJavaType("java.util.Set");
+        setType.addTypeArgument(FullyQualifiedJavaType.getStringInstance());
+        interfaze.addImportedType(listType);
+        interfaze.addImportedType(new FullyQualifiedJavaType("java.util.Set"));
+        interfaze.addImportedType(recordType);
+
+        Method chunk = new Method();
+        context.getCommentGenerator().addGeneralMethodComment(chunk, introspectedTable);
+        chunk.setName("batchInsertSelectiveOrUpdateByUniqueKeySelectiveChunk");
+        chunk.setVisibility(JavaVisibility.PUBLIC);
+        chunk.setReturnType(FullyQualifiedJavaType.getIntInstance());
+        Parameter records = new Parameter(listType, "records");
+        records.addAnnotation("@Param(\"records\")");
+        chunk.addParameter(records);
+        Parameter columns = new Parameter(setType, "columns");
+        columns.addAnnotation("@Param(\"columns\")");
+        chunk.addParameter(columns);
+        interfaze.addMethod(chunk);
+
+        Method method = new Method();
+        context.getCommentGenerator().addGeneralMethodComment(method, introspectedTable);
+        method.setName("batchInsertSelectiveOrUpdateByUniqueKeySelective");
+        method.setVisibility(JavaVisibility.PUBLIC);
+        method.setDefault(true);
+        method.setReturnType(FullyQualifiedJavaType.getIntInstance());
+        method.addParameter(new Parameter(listType, "records"));
+        method.addParameter(new Parameter(setType, "columns"));
+        addChunkedBodyLines(method, chunk.getName(), ", columns",
+                getChunkSize("batchInsertOrUpdateMaxRows", introspectedTable,
+                        introspectedTable.getAllColumns().size()));
+        interfaze.addMethod(method);
+
+        interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.annotations.Param"));
+    }
+
+    // add XML element for batchInsertSelectiveOrUpdateByUniqueKeySelectiveChunk()
+    private void addBatchInsertSelectiveOrUpdateByUniqueKeySelectiveElement(XmlElement parent,
+                                                                           IntrospectedTable introspectedTable) {
+        XmlElement element = new XmlElement("insert");
+        context.getCommentGenerator().addComment(element);
+
+        element.addAttribute(new Attribute("id", "batchInsertSelectiveOrUpdateByUniqueKeySelectiveChunk"));
+        element.addAttribute(new Attribute("parameterType", "map"));
+
+        // 同batchInsertOrUpdateByUniqueKey(), 不回填自增值
+        IntrospectedColumn gkColumn = getGeneratedKeyColumn(introspectedTable);
+        String gkActualColumnName = gkColumn == null ? "" : gkColumn.getActualColumnName();
+        Set<String> ukColumns = getUniqueKeys(introspectedTable).values().iterator().next();
+
+        XmlElement insertTrimElement = new XmlElement("trim");
+        insertTrimElement.addAttribute(new Attribute("prefix", "("));
+        insertTrimElement.addAttribute(new Attribute("suffix", ")"));
+        insertTrimElement.addAttribute(new Attribute("suffixOverrides", ","));
+
+        XmlElement valuesTrimElement = new XmlElement("trim");
+        valuesTrimElement.addAttribute(new Attribute("prefix", "("));
+        valuesTrimElement.addAttribute(new Attribute("suffix", ")"));
+        valuesTrimElement.addAttribute(new Attribute("suffixOverrides", ","));
+
+        List<Element> onDupClauseElements = new ArrayList<>();
+        String doNothingUpdateClause = null;
+
+        for (IntrospectedColumn introspectedColumn : introspectedTable.getAllColumns()) {
+            String escapedColumnName = MyBatis3FormattingUtilities.getEscapedColumnName(introspectedColumn);
+            if (doNothingUpdateClause == null) {
+                doNothingUpdateClause = escapedColumnName + " = " + escapedColumnName;
+            }
+
+            /**
+             * 每列是否写入只在语句开始时用<bind>计算一次, 所有行共用同一个列清单;
+             * 行内的<if>只读取bind出来的布尔值, 不再对每行的每个字段做 record.x != null 判断
+             */
+            String maskName = "column_" + introspectedColumn.getJavaProperty();
+            XmlElement bind = new XmlElement("bind");
+            bind.addAttribute(new Attribute("name", maskName));
+            bind.addAttribute(new Attribute("value", getColumnsContainsTest(introspectedColumn)));
+            element.addElement(bind);
+
+            XmlElement insertIf = new XmlElement("if");
+            insertIf.addAttribute(new Attribute("test", maskName));
+            insertIf.addElement(new TextElement(escapedColumnName + ","));
+            insertTrimElement.addElement(insertIf);
+
+            String parameterClause = MyBatis3FormattingUtilities.getParameterClause(introspectedColumn);
+            XmlElement valuesIf = new XmlElement("if");
+            valuesIf.addAttribute(new Attribute("test", maskName));
+            valuesIf.addElement(new TextElement(parameterClause.substring(0, 2) + "record."
+                    + parameterClause.substring(2) + ","));
+            valuesTrimElement.addElement(valuesIf);
+
+            if (!ukColumns.contains(introspectedColumn.getActualColumnName())
+                    && !gkActualColumnName.equals(introspectedColumn.getActualColumnName())) {
+                XmlElement updateIf = new XmlElement("if");
+                updateIf.addAttribute(new Attribute("test", maskName));
+                updateIf.addElement(new TextElement(String.format("%s = values(%s),",
+                        escapedColumnName, escapedColumnName)));
+                onDupClauseElements.add(updateIf);
+            }
+        }
+
+        element.addElement(new TextElement("insert into " + introspectedTable.getFullyQualifiedTableNameAtRuntime()));
+        element.addElement(insertTrimElement);
+        element.addElement(new TextElement("values"));
+
+        XmlElement foreach = new XmlElement("foreach");
+        foreach.addAttribute(new Attribute("collection", "records"));
+        foreach.addAttribute(new Attribute("item", "record"));
+        foreach.addAttribute(new Attribute("separator", ","));
+        foreach.addElement(valuesTrimElement);
+        element.addElement(foreach);
+
+        element.addElement(new TextElement("on duplicate key update "));
+        for (Element e : onDupClauseElements) {
+            element.addElement(e);
+        }
+        StringBuilder sb = new StringBuilder();
+        OutputUtilities.xmlIndent(sb, 1);
+        element.addElement(new TextElement(sb.toString()
+                + "<!-- 确保on duplicate key update子句后面不为空， 避免sql语法错误 -->"));
+        element.addElement(new TextElement(sb.toString() + doNothingUpdateClause));
+
+        parent.addElement(element);
+    }
+
+    // add batchUpdateByPrimaryKey[Selective]() and batchUpdateByPrimaryKey[Selective]Chunk() methods
+    private void addBatchUpdateByPrimaryKeyMethod(Interface interfaze, IntrospectedTable introspectedTable,
+                                                  boolean selective) {
+        String methodName = selective ? "batchUpdateByPrimaryKeySelective" : "batchUpdateByPrimaryKey";
+        FullyQualifiedJavaType recordType = introspectedTable.getRules().calculateAllFieldsClass();
+        FullyQualifiedJavaType listType = FullyQualifiedJavaType.getNewListInstance();
+        listType.addTypeArgument(recordType);
+        FullyQualifiedJavaType setType = new FullyQualifiedJavaType("java.util.Set");
+        setType.addTypeArgument(FullyQualifiedJavaType.getStringInstance());
+        interfaze.addImportedType(listType);
+        interfaze.addImportedType(recordType);
+
+        Method chunk = new Method();
+        context.getCommentGenerator().addGeneralMethodComment(chunk, introspectedTable);
+        chunk.setName(methodName + "Chunk");
+        chunk.setVisibility(JavaVisibility.PUBLIC);
+        chunk.setReturnType(FullyQualifiedJavaType.getIntInstance());
+        Parameter records = new Parameter(listType, "records");
+        records.addAnnotation("@Param(\"records\")");
+        chunk.addParameter(records);
+        if (selective) {
+            // 同batchInsertSelectiveOrUpdateByUniqueKeySelective(), 由columns指定更新的列, 不根据字段是否为null推断
+            interfaze.addImportedType(new FullyQualifiedJavaType("java.util.Set"));
+            Parameter columns = new Parameter(setType, "columns");
+            columns.addAnnotation("@Param(\"columns\")");
+            chunk.addParameter(columns);
+        }
+        interfaze.addMethod(chunk);
+
+        Method method = new Method();
+        context.getCommentGenerator().addGeneralMethodComment(method, introspectedTable);
+        method.setName(methodName);
+        method.setVisibility(JavaVisibility.PUBLIC);
+        method.setDefault(true);
+        method.setReturnType(FullyQualifiedJavaType.getIntInstance());
+        method.addParameter(new Parameter(listType, "records"));
+        if (selective) {
+            method.addParameter(new Parameter(setType, "columns"));
+        }
+        // case pk when #{pk} then #{value}: 每个非主键列绑定一次主键和值, where pk in (..)中再绑定一次主键
+        int primaryKeyCount = introspectedTable.getPrimaryKeyColumns().size();
+        int placeholdersPerRow = introspectedTable.getNonPrimaryKeyColumns().size() * (primaryKeyCount + 1)
+                + primaryKeyCount;
+        addChunkedBodyLines(method, chunk.getName(), selective ? ", columns" : "",
+                getChunkSize("batchUpdateMaxRows", introspectedTable, placeholdersPerRow));
+        interfaze.addMethod(method);
+
+        interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.annotations.Param"));
+    }
+
+    /**
+     * add XML element for batchUpdateByPrimaryKey[Selective]Chunk()
+     * <pre>
+     * update t
+     * set c1 = case id when #{record.id} then #{record.c1} ... else c1 end,
+     *     c2 = case id when #{record.id} then #{record.c2} ... else c2 end,
+     *     id = id
+     * where id in (#{record.id}, ...)
+     * </pre>
+     * 联合主键使用 case when a = #{record.a} and b = #{record.b} then .. 和 (a, b) in ((..), ..).
+     * selective版本只更新columns中的列, 所有record都使用字段的值(包括null), 不在columns中的列不会出现在set子句中
+     */
+    private void addBatchUpdateByPrimaryKeyElement(XmlElement parent, IntrospectedTable introspectedTable,
+                                                   boolean selective) {
+        XmlElement element = new XmlElement("update");
+        context.getCommentGenerator().addComment(element);
+
+        element.addAttribute(new Attribute("id",
+                (selective ? "batchUpdateByPrimaryKeySelective" : "batchUpdateByPrimaryKey") + "Chunk"));
+        element.addAttribute(new Attribute("parameterType", "map"));
+
+        List<IntrospectedColumn> pkColumns = introspectedTable.getPrimaryKeyColumns();
+        boolean compositeKey = pkColumns.size() > 1;
+        String firstPk = MyBatis3FormattingUtilities.getEscapedColumnName(pkColumns.get(0));
+
+        // 单列主键: "case id" + "when #{record.id}", 联合主键: "case" + "when a = #{record.a} and b = #{record.b}"
+        String casePrefix;
+        StringBuilder whenClause = new StringBuilder("when ");
+        if (compositeKey) {
+            casePrefix = "case";
+            for (int i = 0; i < pkColumns.size(); i++) {
+                if (i > 0) {
+                    whenClause.append(" and ");
+                }
+                whenClause.append(MyBatis3FormattingUtilities.getEscapedColumnName(pkColumns.get(i)))
+                        .append(" = ")
+                        .append(getRecordParameterClause(pkColumns.get(i)));
+            }
+        } else {
+            casePrefix = "case " + firstPk;
+            whenClause.append(getRecordParameterClause(pkColumns.get(0)));
+        }
+
+        element.addElement(new TextElement("update " + introspectedTable.getFullyQualifiedTableNameAtRuntime()));
+        element.addElement(new TextElement("set"));
+
+        for (IntrospectedColumn introspectedColumn : introspectedTable.getNonPrimaryKeyColumns()) {
+            String escapedColumnName = MyBatis3FormattingUtilities.getEscapedColumnName(introspectedColumn);
+            String thenClause = whenClause + " then " + getRecordParameterClause(introspectedColumn);
+
+            XmlElement foreach = new XmlElement("foreach");
+            foreach.addAttribute(new Attribute("collection", "records"));
+            foreach.addAttribute(new Attribute("item", "record"));
+            foreach.addElement(new TextElement(thenClause));
+
+            XmlElement trim = new XmlElement("trim");
+            trim.addAttribute(new Attribute("prefix", escapedColumnName + " = " + casePrefix));
+            trim.addAttribute(new Attribute("suffix", "else " + escapedColumnName + " end,"));
+            trim.addElement(foreach);
+            if (selective) {
+                XmlElement ifElement = new XmlElement("if");
+                ifElement.addAttribute(new Attribute("test", getColumnsContainsTest(introspectedColumn)));
+                ifElement.addElement(trim);
+                element.addElement(ifElement);
+            } else {
+                element.addElement(trim);
+            }
+        }
+
+        // 结束set子句, 同时确保set子句不为空
+        element.addElement(new TextElement(firstPk + " = " + firstPk));
+
+        StringBuilder sb = new StringBuilder("where ");
+        StringBuilder keyClause = new StringBuilder();
+        if (compositeKey) {
+            sb.append('(');
+            keyClause.append('(');
+            for (int i = 0; i < pkColumns.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                    keyClause.append(", ");
+                }
+                sb.append(MyBatis3FormattingUtilities.getEscapedColumnName(pkColumns.get(i)));
+                keyClause.append(getRecordParameterClause(pkColumns.get(i)));
+            }
+            sb.append(')');
+            keyClause.append(')');
+        } else {
+            sb.append(firstPk);
+            keyClause.append(getRecordParameterClause(pkColumns.get(0)));
+        }
+        sb.append(" in");
+        element.addElement(new TextElement(sb.toString()));
+
+        XmlElement foreach = new XmlElement("foreach");
+        foreach.addAttribute(new Attribute("collection", "records"));
+        foreach.addAttribute(new Attribute("item", "record"));
+        foreach.addAttribute(new Attribute("open", "("));
+        foreach.addAttribute(new Attribute("separator", ","));
+        foreach.addAttribute(new Attribute("close", ")"));
+        foreach.addElement(new TextElement(keyClause.toString()));
+        element.addElement(foreach);
+
+        parent.addElement(element);
+    }
+
+    // #{record.xxx,jdbcType=...}
+    private String getRecordParameterClause(IntrospectedColumn introspectedColumn) {
+        String parameterClause = MyBatis3FormattingUtilities.getParameterClause(introspectedColumn);
+        return parameterClause.substring(0, 2) + "record." + parameterClause.substring(2);
+    }
+
     // add selectManuallyByExample() method
     private void addSelectManuallyByExampleMethod(Interface interfaze, IntrospectedTable introspectedTable) {
         Method method = new Method();
@@ -807,7 +1965,7 @@ public class Plugin extends PluginAdapterEx {
 
         element.addAttribute(new Attribute("id", "selectManuallyByExample"));
         element.addAttribute(new Attribute("parameterType", "map"));
-        element.addAttribute(new Attribute("resultMap", introspectedTable.getBaseResultMapId()));
+        element.addAttribute(new Attribute("resultMap", getManualResultMapId(introspectedTable)));
 
         element.addElement(new TextElement("select"));
 
@@ -831,7 +1989,11 @@ public class Plugin extends PluginAdapterEx {
         orderBy.addElement(new TextElement("order by ${example.orderByClause}"));
         element.addElement(orderBy);
 
-        element.addElement(getLimitOffsetClauseElement("example."));
+        element.addElement(getLimitOffsetClauseElement("example.", introspectedTable));
+
+        if (isFunctionOpen(FunctionNames.queryHints, introspectedTable)) {
+            addQueryHintElements(element, "example.", true, introspectedTable);
+        }
 
         parent.addElement(element);
     }
@@ -851,24 +2013,8 @@ public class Plugin extends PluginAdapterEx {
         Parameter selectClause = new Parameter(FullyQualifiedJavaType.getStringInstance(), "selectClause");
         selectClause.addAnnotation("@Param(\"selectClause\")");
         method.addParameter(selectClause);
+        addPrimaryKeyParameters(interfaze, method, introspectedTable);
 
-        if (introspectedTable.getRules().generatePrimaryKeyClass()) {
-            Parameter key = new Parameter(new FullyQualifiedJavaType(introspectedTable.getPrimaryKeyType()), "key");
-            key.addAnnotation("@Param(\"key\")");
-            method.addParameter(key);
-        } else {
-            List<IntrospectedColumn> introspectedColumns = introspectedTable.getPrimaryKeyColumns();
-            for (IntrospectedColumn introspectedColumn : introspectedColumns) {
-                FullyQualifiedJavaType type = introspectedColumn.getFullyQualifiedJavaType();
-                interfaze.addImportedType(type);
-
-                Parameter parameter = new Parameter(type, introspectedColumn.getJavaProperty());
-                parameter.addAnnotation("@Param(\"" + introspectedColumn.getJavaProperty() + "\")");
-                method.addParameter(parameter);
-            }
-        }
-
-        interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.annotations.Param"));
         interfaze.addMethod(method);
     }
 
@@ -879,50 +2025,177 @@ public class Plugin extends PluginAdapterEx {
 
         element.addAttribute(new Attribute("id", "selectManuallyByPrimaryKey"));
         element.addAttribute(new Attribute("parameterType", "map"));
-        element.addAttribute(new Attribute("resultMap", introspectedTable.getBaseResultMapId()));
+        element.addAttribute(new Attribute("resultMap", getManualResultMapId(introspectedTable)));
 
         element.addElement(new TextElement("select ${selectClause} from " +
                 introspectedTable.getAliasedFullyQualifiedTableNameAtRuntime()));
+        addPrimaryKeyWhereClause(element, introspectedTable, true);
 
-        boolean addPrefix = introspectedTable.getRules().generatePrimaryKeyClass();
-        boolean and = false;
-        StringBuilder sb = new StringBuilder();
-        for (IntrospectedColumn introspectedColumn : introspectedTable.getPrimaryKeyColumns()) {
-            sb.setLength(0);
-            if (and) {
-                sb.append("  and ");
-            } else {
-                sb.append("where ");
-                and = true;
-            }
+        parent.addElement(element);
+    }
 
-            sb.append(MyBatis3FormattingUtilities.getAliasedEscapedColumnName(introspectedColumn));
-            sb.append(" = "); //$NON-NLS-1$
-            String parameterClause = MyBatis3FormattingUtilities.getParameterClause(introspectedColumn);
-            if (addPrefix) {
-                sb.append(parameterClause.substring(0, 2));
-                sb.append("key.");
-                sb.append(parameterClause.substring(2));
-            } else {
-                sb.append(parameterClause);
-            }
-            element.addElement(new TextElement(sb.toString()));
+    /**
+     * selectByPrimaryKeys()中key的类型: 生成了主键类时为主键类, 单列主键为该列的类型,
+     * 否则(联合主键但没有生成主键类)为record类型, 使用其中的主键属性
+     */
+    private FullyQualifiedJavaType getPrimaryKeyParameterType(IntrospectedTable introspectedTable) {
+        if (introspectedTable.getRules().generatePrimaryKeyClass()) {
+            return new FullyQualifiedJavaType(introspectedTable.getPrimaryKeyType());
         }
-
-        parent.addElement(element);
+        List<IntrospectedColumn> pkColumns = introspectedTable.getPrimaryKeyColumns();
+        if (pkColumns.size() == 1) {
+            // 作为List/Collection的泛型参数, 基本类型使用包装类
+            FullyQualifiedJavaType keyType = pkColumns.get(0).getFullyQualifiedJavaType();
+            return keyType.isPrimitive() ? keyType.getPrimitiveTypeWrapper() : keyType;
+        }
+        return introspectedTable.getRules().calculateAllFieldsClass();
     }
 
-    // add updateManuallyByExample() method
-    private void addUpdateManuallyByExampleMethod(Interface interfaze, IntrospectedTable introspectedTable) {
+    // add selectByPrimaryKeys() / selectManuallyByPrimaryKeys() and their Chunk() methods
+    private void addSelectByPrimaryKeysMethod(Interface interfaze, IntrospectedTable introspectedTable,
+                                              boolean manually) {
+        String methodName = manually ? "selectManuallyByPrimaryKeys" : "selectByPrimaryKeys";
+        FullyQualifiedJavaType recordType = introspectedTable.getRules().calculateAllFieldsClass();
+        FullyQualifiedJavaType returnType = FullyQualifiedJavaType.getNewListInstance();
+        returnType.addTypeArgument(recordType);
+        FullyQualifiedJavaType keyType = getPrimaryKeyParameterType(introspectedTable);
+        FullyQualifiedJavaType keyListType = FullyQualifiedJavaType.getNewListInstance();
+        keyListType.addTypeArgument(keyType);
+        FullyQualifiedJavaType keyCollectionType = new FullyQualifiedJavaType("java.util.Collection");
+        keyCollectionType.addTypeArgument(keyType);
+        interfaze.addImportedType(returnType);
+        interfaze.addImportedType(recordType);
+        interfaze.addImportedType(keyType);
+        interfaze.addImportedType(new FullyQualifiedJavaType("java.util.Collection"));
+        interfaze.addImportedType(FullyQualifiedJavaType.getNewArrayListInstance());
+
+        Method chunk = new Method();
+        context.getCommentGenerator().addGeneralMethodComment(chunk, introspectedTable);
+        chunk.setName(methodName + "Chunk");
+        chunk.setVisibility(JavaVisibility.PUBLIC);
+        chunk.setReturnType(returnType);
+        if (manually) {
+            Parameter selectClause = new Parameter(FullyQualifiedJavaType.getStringInstance(), "selectClause");
+            selectClause.addAnnotation("@Param(\"selectClause\")");
+            chunk.addParameter(selectClause);
+        }
+        Parameter keys = new Parameter(keyListType, "keys");
+        keys.addAnnotation("@Param(\"keys\")");
+        chunk.addParameter(keys);
+        interfaze.addMethod(chunk);
+
         Method method = new Method();
         context.getCommentGenerator().addGeneralMethodComment(method, introspectedTable);
-
-        method.setName("updateManuallyByExample");
+        method.setName(methodName);
         method.setVisibility(JavaVisibility.PUBLIC);
-        method.setReturnType(FullyQualifiedJavaType.getIntInstance());
+        method.setDefault(true);
+        method.setReturnType(returnType);
+        if (manually) {
+            method.addParameter(new Parameter(FullyQualifiedJavaType.getStringInstance(), "selectClause"));
+        }
+        method.addParameter(new Parameter(keyCollectionType, "keys"));
+
+        // 按selectByPrimaryKeysMaxKeys拆分in列表, 每条sql的长度和执行计划保持稳定
+        int chunkSize = getChunkSize("selectByPrimaryKeysMaxKeys", introspectedTable,
+                introspectedTable.getPrimaryKeyColumns().size());
+        method.addBodyLine(String.format("List<%s> keyList = new ArrayList<>(keys);", keyType.getShortName()));
+        method.addBodyLine(String.format("List<%s> records = new ArrayList<>(keyList.size());",
+                recordType.getShortName()));
+        method.addBodyLine(String.format("for (int i = 0; i < keyList.size(); i += %d) {", chunkSize));
+        method.addBodyLine(String.format("records.addAll(%s(%skeyList.subList(i, Math.min(i + %d, keyList.size()))));",
+                chunk.getName(), manually ? "selectClause, " : "", chunkSize));
+        method.addBodyLine("}");
+        method.addBodyLine("return records;");
+        interfaze.addMethod(method);
 
-        Parameter updateClause = new Parameter(FullyQualifiedJavaType.getStringInstance(), "updateClause");
-        updateClause.addAnnotation("@Param(\"updateClause\")");
+        interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.annotations.Param"));
+    }
+
+    /**
+     * add XML element for selectByPrimaryKeysChunk() / selectManuallyByPrimaryKeysChunk()
+     * 单列主键: where id in (#{key}, ..), 联合主键: where (a, b) in ((#{key.a}, #{key.b}), ..)
+     */
+    private void addSelectByPrimaryKeysElement(XmlElement parent, IntrospectedTable introspectedTable,
+                                               boolean manually) {
+        XmlElement element = new XmlElement("select");
+        context.getCommentGenerator().addComment(element);
+
+        element.addAttribute(new Attribute("id", (manually ? "selectManuallyByPrimaryKeys" : "selectByPrimaryKeys") + "Chunk"));
+        element.addAttribute(new Attribute("parameterType", "map"));
+
+        if (manually) {
+            element.addAttribute(new Attribute("resultMap", getManualResultMapId(introspectedTable)));
+            element.addElement(new TextElement("select ${selectClause}"));
+        } else {
+            // 与selectByPrimaryKey()一样查询所有列, 包括BLOB列
+            boolean withBLOBs = introspectedTable.getRules().generateResultMapWithBLOBs();
+            element.addAttribute(new Attribute("resultMap", withBLOBs
+                    ? introspectedTable.getResultMapWithBLOBsId() : introspectedTable.getBaseResultMapId()));
+            element.addElement(new TextElement("select"));
+            element.addElement(getBaseColumnListElement(introspectedTable));
+            if (withBLOBs) {
+                element.addElement(new TextElement(","));
+                element.addElement(getBlobColumnListElement(introspectedTable));
+            }
+        }
+        element.addElement(new TextElement("from " + introspectedTable.getAliasedFullyQualifiedTableNameAtRuntime()));
+
+        List<IntrospectedColumn> pkColumns = introspectedTable.getPrimaryKeyColumns();
+        boolean keyIsColumnValue = pkColumns.size() == 1 && !introspectedTable.getRules().generatePrimaryKeyClass();
+        StringBuilder sb = new StringBuilder("where ");
+        StringBuilder keyClause = new StringBuilder();
+        if (pkColumns.size() > 1) {
+            sb.append('(');
+            keyClause.append('(');
+        }
+        for (int i = 0; i < pkColumns.size(); i++) {
+            IntrospectedColumn introspectedColumn = pkColumns.get(i);
+            if (i > 0) {
+                sb.append(", ");
+                keyClause.append(", ");
+            }
+            sb.append(MyBatis3FormattingUtilities.getAliasedEscapedColumnName(introspectedColumn));
+            String parameterClause = MyBatis3FormattingUtilities.getParameterClause(introspectedColumn);
+            if (keyIsColumnValue) {
+                // #{id,jdbcType=BIGINT} -> #{key,jdbcType=BIGINT}
+                keyClause.append("#{key")
+                        .append(parameterClause.substring(2 + introspectedColumn.getJavaProperty().length()));
+            } else {
+                keyClause.append(parameterClause.substring(0, 2))
+                        .append("key.")
+                        .append(parameterClause.substring(2));
+            }
+        }
+        if (pkColumns.size() > 1) {
+            sb.append(')');
+            keyClause.append(')');
+        }
+        sb.append(" in");
+        element.addElement(new TextElement(sb.toString()));
+
+        XmlElement foreach = new XmlElement("foreach");
+        foreach.addAttribute(new Attribute("collection", "keys"));
+        foreach.addAttribute(new Attribute("item", "key"));
+        foreach.addAttribute(new Attribute("open", "("));
+        foreach.addAttribute(new Attribute("separator", ","));
+        foreach.addAttribute(new Attribute("close", ")"));
+        foreach.addElement(new TextElement(keyClause.toString()));
+        element.addElement(foreach);
+
+        parent.addElement(element);
+    }
+
+    // add updateManuallyByExample() method
+    private void addUpdateManuallyByExampleMethod(Interface interfaze, IntrospectedTable introspectedTable) {
+        Method method = new Method();
+        context.getCommentGenerator().addGeneralMethodComment(method, introspectedTable);
+
+        method.setName("updateManuallyByExample");
+        method.setVisibility(JavaVisibility.PUBLIC);
+        method.setReturnType(FullyQualifiedJavaType.getIntInstance());
+
+        Parameter updateClause = new Parameter(FullyQualifiedJavaType.getStringInstance(), "updateClause");
+        updateClause.addAnnotation("@Param(\"updateClause\")");
         method.addParameter(updateClause);
         Parameter example = new Parameter(new FullyQualifiedJavaType(introspectedTable.getExampleType()), "example");
         example.addAnnotation("@Param(\"example\")");
@@ -950,6 +2223,10 @@ public class Plugin extends PluginAdapterEx {
         example.addElement(includeElement);
         element.addElement(example);
 
+        if (isFunctionOpen(FunctionNames.queryHints, introspectedTable)) {
+            addQueryHintElements(element, "example.", true, introspectedTable);
+        }
+
         parent.addElement(element);
     }
 
@@ -1026,8 +2303,1424 @@ public class Plugin extends PluginAdapterEx {
         parent.addElement(element);
     }
 
+    /**
+     * 流式查询的fetchSize, 优先使用表的<property name="streamingFetchSize">, 然后是插件的同名属性.
+     * mysql驱动只有fetchSize为Integer.MIN_VALUE时才逐行读取结果, 否则会把结果全部读到内存中
+     * (或者在连接上配置useCursorFetch=true后使用正数fetchSize)
+     */
+    private String getStreamingFetchSize(IntrospectedTable introspectedTable) {
+        String fetchSize = introspectedTable.getTableConfigurationProperty("streamingFetchSize");
+        if (!stringHasValue(fetchSize)) {
+            fetchSize = properties.getProperty("streamingFetchSize");
+        }
+        return stringHasValue(fetchSize) ? fetchSize.trim() : String.valueOf(Integer.MIN_VALUE);
+    }
+
+    // selectByExample()的返回值类型, 同SelectByExampleWithoutBLOBsMethodGenerator/SelectByExampleWithBLOBsMethodGenerator
+    private FullyQualifiedJavaType getSelectByExampleRecordType(IntrospectedTable introspectedTable) {
+        Rules rules = introspectedTable.getRules();
+        if (rules.generateSelectByExampleWithBLOBs()) {
+            return rules.calculateAllFieldsClass();
+        }
+        if (rules.generateBaseRecordClass()) {
+            return new FullyQualifiedJavaType(introspectedTable.getBaseRecordType());
+        }
+        return new FullyQualifiedJavaType(introspectedTable.getPrimaryKeyType());
+    }
+
+    // add selectByExampleWithCursor() / selectByExampleWithResultHandler() and the manual versions
+    private void addStreamingSelectMethods(Interface interfaze, IntrospectedTable introspectedTable, boolean manually) {
+        String methodName = manually ? "selectManuallyByExample" : "selectByExample";
+        FullyQualifiedJavaType recordType = manually
+                ? introspectedTable.getRules().calculateAllFieldsClass()
+                : getSelectByExampleRecordType(introspectedTable);
+        FullyQualifiedJavaType exampleType = new FullyQualifiedJavaType(introspectedTable.getExampleType());
+        interfaze.addImportedType(recordType);
+        interfaze.addImportedType(exampleType);
+
+        FullyQualifiedJavaType cursorType = new FullyQualifiedJavaType("org.apache.ibatis.cursor.Cursor");
+        cursorType.addTypeArgument(recordType);
+        interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.cursor.Cursor"));
+        FullyQualifiedJavaType handlerType = new FullyQualifiedJavaType("org.apache.ibatis.session.ResultHandler");
+        handlerType.addTypeArgument(recordType);
+        interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.session.ResultHandler"));
+
+        Method cursor = new Method();
+        context.getCommentGenerator().addGeneralMethodComment(cursor, introspectedTable);
+        cursor.setName(methodName + "WithCursor");
+        cursor.setVisibility(JavaVisibility.PUBLIC);
+        cursor.setReturnType(cursorType);
+        addStreamingSelectParameters(cursor, exampleType, manually);
+        interfaze.addMethod(cursor);
+
+        Method handler = new Method();
+        context.getCommentGenerator().addGeneralMethodComment(handler, introspectedTable);
+        handler.setName(methodName + "WithResultHandler");
+        handler.setVisibility(JavaVisibility.PUBLIC);
+        addStreamingSelectParameters(handler, exampleType, manually);
+        handler.addParameter(new Parameter(handlerType, "handler"));
+        interfaze.addMethod(handler);
+
+        if (manually) {
+            interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.annotations.Param"));
+        }
+    }
+
+    private void addStreamingSelectParameters(Method method, FullyQualifiedJavaType exampleType, boolean manually) {
+        if (manually) {
+            Parameter selectClause = new Parameter(FullyQualifiedJavaType.getStringInstance(), "selectClause");
+            selectClause.addAnnotation("@Param(\"selectClause\")");
+            method.addParameter(selectClause);
+            Parameter example = new Parameter(exampleType, "example");
+            example.addAnnotation("@Param(\"example\")");
+            method.addParameter(example);
+        } else {
+            // 只有一个参数(ResultHandler不算)时不加@Param, example本身就是参数对象, 与selectByExample()的sql一致
+            method.addParameter(new Parameter(exampleType, "example"));
+        }
+    }
+
+    /**
+     * add XML elements for selectByExampleWithCursor() / selectByExampleWithResultHandler() and the manual versions,
+     * 复制已生成的selectByExample(包括limit/offset等修改)并加上fetchSize和resultSetType,
+     * 没有找到要复制的select元素时不生成
+     */
+    private void addStreamingSelectElements(XmlElement parent, IntrospectedTable introspectedTable,
+                                            boolean manually) {
+        String sourceId;
+        if (manually) {
+            sourceId = "selectManuallyByExample";
+        } else if (introspectedTable.getRules().generateSelectByExampleWithBLOBs()) {
+            sourceId = introspectedTable.getSelectByExampleWithBLOBsStatementId();
+        } else {
+            sourceId = introspectedTable.getSelectByExampleStatementId();
+        }
+        XmlElement source = findElementById(parent, sourceId);
+        if (source == null) {
+            return;
+        }
+
+        String fetchSize = getStreamingFetchSize(introspectedTable);
+        String methodName = manually ? "selectManuallyByExample" : "selectByExample";
+        for (String suffix : new String[]{"WithCursor", "WithResultHandler"}) {
+            XmlElement element = new XmlElement(source);
+            element.getAttributes().removeIf(attribute -> "id".equals(attribute.getName()));
+            element.addAttribute(new Attribute("id", methodName + suffix));
+            element.addAttribute(new Attribute("fetchSize", fetchSize));
+            element.addAttribute(new Attribute("resultSetType", "FORWARD_ONLY"));
+            parent.addElement(element);
+        }
+    }
+
+    /**
+     * 表的二级缓存配置: &lt;property name="cache" value="true" /&gt;,
+     * 以及可选的cache.eviction / cache.flushInterval / cache.size / cache.readOnly, 对应&lt;cache&gt;的同名属性
+     *
+     * @return 没有开启缓存时返回null
+     */
+    private Map<String, String> getCacheAttributes(IntrospectedTable introspectedTable) {
+        return tableCacheAttributes.computeIfAbsent(introspectedTable.getTableConfiguration(),
+                tc -> Optional.ofNullable(parseCacheAttributes(introspectedTable))).orElse(null);
+    }
+
+    /**
+     * 每个&lt;table&gt;配置的缓存属性, 第一次使用时解析并校验, 之后的hook中只需要查找
+     */
+    private final Map<TableConfiguration, Optional<Map<String, String>>> tableCacheAttributes = new IdentityHashMap<>();
+
+    private Map<String, String> parseCacheAttributes(IntrospectedTable introspectedTable) {
+        Properties tableProperties = introspectedTable.getTableConfiguration().getProperties();
+        if (!isTrue(tableProperties.getProperty("cache"))) {
+            return null;
+        }
+        Map<String, String> attributes = new TreeMap<>();
+        for (String propertyName : tableProperties.stringPropertyNames()) {
+            if (!propertyName.startsWith(CACHE_PROPERTY_PREFIX)) {
+                continue;
+            }
+            String name = propertyName.substring(CACHE_PROPERTY_PREFIX.length());
+            String value = tableProperties.getProperty(propertyName).trim();
+            switch (name) {
+                case "eviction":
+                    // MyBatis的别名LRU/FIFO/SOFT/WEAK, 或者自定义的Cache装饰器类名
+                    if (!value.matches("LRU|FIFO|SOFT|WEAK|[A-Za-z_$][\\w$]*(\\.[A-Za-z_$][\\w$]*)+")) {
+                        throw new RuntimeException(String.format("表 %s 的cache.eviction的值 %s 不是LRU/FIFO/SOFT/WEAK或类名",
+                                introspectedTable.getFullyQualifiedTableNameAtRuntime(), value));
+                    }
+                    break;
+                case "flushInterval":
+                case "size":
+                    if (!value.matches("[1-9][0-9]{0,8}")) {
+                        throw new RuntimeException(String.format("表 %s 的%s的值 %s 不是正整数",
+                                introspectedTable.getFullyQualifiedTableNameAtRuntime(), propertyName, value));
+                    }
+                    break;
+                case "readOnly":
+                    if (!value.equals("true") && !value.equals("false")) {
+                        throw new RuntimeException(String.format("表 %s 的cache.readOnly的值 %s 不是true/false",
+                                introspectedTable.getFullyQualifiedTableNameAtRuntime(), value));
+                    }
+                    break;
+                default:
+                    throw new RuntimeException(String.format("表 %s 的%s不是支持的缓存配置, 只支持eviction/flushInterval/size/readOnly",
+                            introspectedTable.getFullyQualifiedTableNameAtRuntime(), propertyName));
+            }
+            attributes.put(name, value);
+        }
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    /**
+     * readOnly为false(MyBatis的默认值)的缓存保存的是序列化后的结果, 每次命中都反序列化出新的对象,
+     * 查询结果的类需要实现Serializable
+     */
+    private boolean isSerializedCache(IntrospectedTable introspectedTable) {
+        Map<String, String> cacheAttributes = getCacheAttributes(introspectedTable);
+        return cacheAttributes != null && !"true".equals(cacheAttributes.get("readOnly"));
+    }
+
+    // 同MBG的SerializablePlugin, 已经实现了Serializable的类不再修改
+    private void makeSerializable(TopLevelClass topLevelClass) {
+        FullyQualifiedJavaType serializable = new FullyQualifiedJavaType("java.io.Serializable");
+        if (topLevelClass.getSuperInterfaceTypes().contains(serializable)) {
+            return;
+        }
+        topLevelClass.addImportedType(serializable);
+        topLevelClass.addSuperInterface(serializable);
+
+        Field field = new Field("serialVersionUID", new FullyQualifiedJavaType("long"));
+        field.setFinal(true);
+        field.setInitializationString("1L");
+        field.setStatic(true);
+        field.setVisibility(JavaVisibility.PRIVATE);
+        topLevelClass.addField(field);
+    }
+
+    /**
+     * add &lt;cache&gt;, 并给所有语句加上明确的flushCache/useCache:
+     * insert/update/delete(包括插件生成的insertOrUpdate, updateManually, increment等)执行后清空本namespace的缓存,
+     * Cursor/ResultHandler的流式查询逐行处理结果, 不使用缓存.
+     * 缓存以namespace为单位, 其他mapper或手写的sql修改这张表时不会清空这里的缓存
+     */
+    private void addCacheElement(XmlElement parent, IntrospectedTable introspectedTable, Map<String, String> cacheAttributes) {
+        for (Element e : parent.getElements()) {
+            if (!(e instanceof XmlElement)) {
+                continue;
+            }
+            XmlElement element = (XmlElement) e;
+            switch (element.getName()) {
+                case "insert":
+                case "update":
+                case "delete":
+                    element.addAttribute(new Attribute("flushCache", "true"));
+                    break;
+                case "select":
+                    String id = findAttributeValue(element, "id");
+                    boolean streaming = id != null && (id.endsWith("WithCursor") || id.endsWith("WithResultHandler"));
+                    element.addAttribute(new Attribute("useCache", String.valueOf(!streaming)));
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        XmlElement cache = new XmlElement("cache");
+        context.getCommentGenerator().addComment(cache);
+        for (Map.Entry<String, String> entry : cacheAttributes.entrySet()) {
+            cache.addAttribute(new Attribute(entry.getKey(), entry.getValue()));
+        }
+        parent.addElement(0, cache);
+
+        if ("true".equals(cacheAttributes.get("readOnly")) && !introspectedTable.isImmutable()) {
+            System.out.println(String.format("INFO : 表 %s 的二级缓存是readOnly的, 所有调用方共享缓存中的对象, "
+                            + "修改查询结果会修改缓存, 建议同时打开immutableModel",
+                    introspectedTable.getFullyQualifiedTableNameAtRuntime()));
+        }
+    }
+
+    private static String findAttributeValue(XmlElement element, String name) {
+        for (Attribute attribute : element.getAttributes()) {
+            if (name.equals(attribute.getName())) {
+                return attribute.getValue();
+            }
+        }
+        return null;
+    }
+
+    private XmlElement findElementById(XmlElement root, String id) {
+        for (Element e : root.getElements()) {
+            if (!(e instanceof XmlElement)) {
+                continue;
+            }
+            for (Attribute attribute : ((XmlElement) e).getAttributes()) {
+                if ("id".equals(attribute.getName()) && id.equals(attribute.getValue())) {
+                    return (XmlElement) e;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 表的投影配置: &lt;property name="projection.Summary" value="id, user_name" /&gt;
+     * 按名称排序, 保证生成结果稳定
+     *
+     * @return key:投影名称(首字母大写), value:投影的列(按配置中的顺序)
+     */
+    private Map<String, List<IntrospectedColumn>> getProjections(IntrospectedTable introspectedTable) {
+        Map<String, List<IntrospectedColumn>> projections = new TreeMap<>();
+        Properties tableProperties = introspectedTable.getTableConfiguration().getProperties();
+        for (String propertyName : tableProperties.stringPropertyNames()) {
+            if (!propertyName.startsWith(PROJECTION_PROPERTY_PREFIX)) {
+                continue;
+            }
+            String name = propertyName.substring(PROJECTION_PROPERTY_PREFIX.length());
+            if (!name.matches("[A-Za-z][A-Za-z0-9_]*")) {
+                throw new RuntimeException(String.format("表 %s 的投影名称 %s 不是合法的java标识符",
+                        introspectedTable.getFullyQualifiedTableNameAtRuntime(), name));
+            }
+
+            List<IntrospectedColumn> columns = new ArrayList<>();
+            for (String columnName : tableProperties.getProperty(propertyName).split(",")) {
+                if (!stringHasValue(columnName.trim())) {
+                    continue;
+                }
+                IntrospectedColumn introspectedColumn = introspectedTable.getColumn(columnName.trim());
+                if (introspectedColumn == null) {
+                    throw new RuntimeException(String.format("表 %s 的投影 %s 中的列 %s 不存在或被忽略",
+                            introspectedTable.getFullyQualifiedTableNameAtRuntime(), name, columnName.trim()));
+                }
+                columns.add(introspectedColumn);
+            }
+            if (columns.isEmpty()) {
+                throw new RuntimeException(String.format("表 %s 的投影 %s 没有配置列",
+                        introspectedTable.getFullyQualifiedTableNameAtRuntime(), name));
+            }
+            projections.put(Character.toUpperCase(name.charAt(0)) + name.substring(1), columns);
+        }
+        return projections;
+    }
+
+    // 投影类与model类在同一个包中, 类名为 domainObjectName + 投影名称
+    private FullyQualifiedJavaType getProjectionType(IntrospectedTable introspectedTable, String projectionName) {
+        FullyQualifiedJavaType recordType = new FullyQualifiedJavaType(introspectedTable.getBaseRecordType());
+        return new FullyQualifiedJavaType(recordType.getPackageName() + "."
+                + introspectedTable.getFullyQualifiedTable().getDomainObjectName() + projectionName);
+    }
+
+    // generate projection classes
+    @Override
+    public List<GeneratedJavaFile> contextGenerateAdditionalJavaFiles(IntrospectedTable introspectedTable) {
+        List<GeneratedJavaFile> files = new ArrayList<>();
+        for (Map.Entry<String, List<IntrospectedColumn>> entry : getProjections(introspectedTable).entrySet()) {
+            TopLevelClass topLevelClass = new TopLevelClass(getProjectionType(introspectedTable, entry.getKey()));
+            topLevelClass.setVisibility(JavaVisibility.PUBLIC);
+            context.getCommentGenerator().addJavaFileComment(topLevelClass);
+            if (isFunctionOpen(FunctionNames.tableAndColumnComment, introspectedTable)) {
+                commentClass(topLevelClass, introspectedTable);
+            }
+            if (isSerializedCache(introspectedTable)) {
+                makeSerializable(topLevelClass);
+            }
+
+            for (IntrospectedColumn introspectedColumn : entry.getValue()) {
+                Field field = JavaBeansUtil.getJavaBeansField(introspectedColumn, context, introspectedTable);
+                if (isFunctionOpen(FunctionNames.tableAndColumnComment, introspectedTable)) {
+                    commentField(field, introspectedTable, introspectedColumn);
+                }
+                topLevelClass.addField(field);
+                topLevelClass.addImportedType(field.getType());
+
+                Method getter = JavaBeansUtil.getJavaBeansGetter(introspectedColumn, context, introspectedTable);
+                Method setter = JavaBeansUtil.getJavaBeansSetter(introspectedColumn, context, introspectedTable);
+                if (isFunctionOpen(FunctionNames.finalGetterSetter, introspectedTable)) {
+                    getter.setFinal(true);
+                    setter.setFinal(true);
+                }
+                topLevelClass.addMethod(getter);
+                topLevelClass.addMethod(setter);
+            }
+
+            files.add(new GeneratedJavaFile(topLevelClass,
+                    context.getJavaModelGeneratorConfiguration().getTargetProject(),
+                    context.getProperty(PropertyRegistry.CONTEXT_JAVA_FILE_ENCODING),
+                    context.getJavaFormatter()));
+        }
+
+        if (isFunctionOpen(FunctionNames.batchWriter, introspectedTable)) {
+            if (context.getJavaClientGeneratorConfiguration() == null) {
+                System.out.println(String.format("INFO : 没有配置javaClientGenerator, 不会生成表 %s 的BatchWriter",
+                        introspectedTable.getFullyQualifiedTableNameAtRuntime()));
+            } else {
+                files.add(generateBatchWriter(introspectedTable));
+            }
+        }
+
+        GeneratedJavaFile asyncMapper = asyncMappers.remove(getTableKey(introspectedTable));
+        if (asyncMapper != null) {
+            files.add(asyncMapper);
+        }
+        return files;
+    }
+
+    /**
+     * 生成 XxxBatchWriter: 使用ExecutorType.BATCH的SqlSession缓冲insert/insertOrUpdateByUniqueKey/updateByPrimaryKey,
+     * 每flushSize条记录或距离上次flush超过flushIntervalMillis(在每次添加记录时检查)时执行flushStatements().
+     * 配合连接参数rewriteBatchedStatements=true, mysql驱动会把一批insert合并为多行insert
+     */
+    private GeneratedJavaFile generateBatchWriter(IntrospectedTable introspectedTable) {
+        Rules rules = introspectedTable.getRules();
+        FullyQualifiedJavaType mapperType = new FullyQualifiedJavaType(introspectedTable.getMyBatis3JavaMapperType());
+        FullyQualifiedJavaType writerType = new FullyQualifiedJavaType(mapperType.getPackageName() + "."
+                + introspectedTable.getFullyQualifiedTable().getDomainObjectName() + "BatchWriter");
+        FullyQualifiedJavaType sqlSessionType = new FullyQualifiedJavaType("org.apache.ibatis.session.SqlSession");
+        FullyQualifiedJavaType sqlSessionFactoryType =
+                new FullyQualifiedJavaType("org.apache.ibatis.session.SqlSessionFactory");
+        FullyQualifiedJavaType batchResultType = new FullyQualifiedJavaType("org.apache.ibatis.executor.BatchResult");
+        FullyQualifiedJavaType batchResultListType = FullyQualifiedJavaType.getNewListInstance();
+        batchResultListType.addTypeArgument(batchResultType);
+        FullyQualifiedJavaType longType = new FullyQualifiedJavaType("long");
+
+        TopLevelClass topLevelClass = new TopLevelClass(writerType);
+        topLevelClass.setVisibility(JavaVisibility.PUBLIC);
+        topLevelClass.addSuperInterface(new FullyQualifiedJavaType("java.lang.AutoCloseable"));
+        topLevelClass.addImportedType(mapperType);
+        topLevelClass.addImportedType(sqlSessionType);
+        topLevelClass.addImportedType(sqlSessionFactoryType);
+        topLevelClass.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.session.ExecutorType"));
+        topLevelClass.addImportedType(batchResultType);
+        topLevelClass.addImportedType(FullyQualifiedJavaType.getNewListInstance());
+        topLevelClass.addImportedType(new FullyQualifiedJavaType("java.util.Collections"));
+        context.getCommentGenerator().addJavaFileComment(topLevelClass);
+        topLevelClass.addJavaDocLine("/**");
+        topLevelClass.addJavaDocLine(" * 使用ExecutorType.BATCH批量写入 " + introspectedTable.getFullyQualifiedTable()
+                + ", 每flushSize条记录或每flushIntervalMillis毫秒(在添加记录时检查)执行一次flushStatements().");
+        topLevelClass.addJavaDocLine(" * 不是线程安全的, close()时未commit()的数据会被回滚.");
+        topLevelClass.addJavaDocLine(" * 批量模式下selectKey在语句真正执行前就会运行, 需要回填自增值时请使用<generatedKey sqlStatement=\"JDBC\">");
+        topLevelClass.addJavaDocLine(" */");
+
+        addWriterField(topLevelClass, sqlSessionType, "sqlSession", true);
+        addWriterField(topLevelClass, mapperType, "mapper", true);
+        addWriterField(topLevelClass, FullyQualifiedJavaType.getIntInstance(), "flushSize", true);
+        addWriterField(topLevelClass, longType, "flushIntervalMillis", true);
+        addWriterField(topLevelClass, FullyQualifiedJavaType.getIntInstance(), "pendingCount", false);
+        addWriterField(topLevelClass, longType, "lastFlushTime", false);
+        addWriterField(topLevelClass, longType, "recordCount", false);
+        addWriterField(topLevelClass, longType, "flushCount", false);
+        addWriterField(topLevelClass, longType, "commitCount", false);
+        addWriterField(topLevelClass, longType, "affectedRows", false);
+
+        Method constructor = new Method(writerType.getShortName());
+        constructor.setConstructor(true);
+        constructor.setVisibility(JavaVisibility.PUBLIC);
+        constructor.addParameter(new Parameter(sqlSessionFactoryType, "sqlSessionFactory"));
+        constructor.addBodyLine(String.format("this(sqlSessionFactory, %d, %dL);",
+                getPositiveIntProperty("batchWriterFlushSize", DEFAULT_BATCH_WRITER_FLUSH_SIZE),
+                getPositiveIntProperty("batchWriterFlushIntervalMillis", DEFAULT_BATCH_WRITER_FLUSH_INTERVAL_MILLIS)));
+        topLevelClass.addMethod(constructor);
+
+        constructor = new Method(writerType.getShortName());
+        constructor.setConstructor(true);
+        constructor.setVisibility(JavaVisibility.PUBLIC);
+        constructor.addParameter(new Parameter(sqlSessionFactoryType, "sqlSessionFactory"));
+        constructor.addParameter(new Parameter(FullyQualifiedJavaType.getIntInstance(), "flushSize"));
+        constructor.addParameter(new Parameter(longType, "flushIntervalMillis"));
+        constructor.addBodyLine("if (flushSize <= 0 || flushIntervalMillis <= 0) {");
+        constructor.addBodyLine("throw new IllegalArgumentException(\"flushSize and flushIntervalMillis must be positive\");");
+        constructor.addBodyLine("}");
+        constructor.addBodyLine("this.sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH, false);");
+        constructor.addBodyLine(String.format("this.mapper = sqlSession.getMapper(%s.class);",
+                mapperType.getShortName()));
+        constructor.addBodyLine("this.flushSize = flushSize;");
+        constructor.addBodyLine("this.flushIntervalMillis = flushIntervalMillis;");
+        constructor.addBodyLine("this.lastFlushTime = System.currentTimeMillis();");
+        topLevelClass.addMethod(constructor);
+
+        FullyQualifiedJavaType allFieldsType = rules.calculateAllFieldsClass();
+        if (rules.generateInsert()) {
+            addWriterMethod(topLevelClass, allFieldsType, "insert", introspectedTable.getInsertStatementId());
+        }
+        if (isFunctionOpen(FunctionNames.insertOrUpdate, introspectedTable) && getUniqueKeys(introspectedTable).size() == 1) {
+            addWriterMethod(topLevelClass, allFieldsType, "insertOrUpdateByUniqueKey", "insertOrUpdateByUniqueKey");
+        }
+        if (rules.generateUpdateByPrimaryKeyWithBLOBs()) {
+            addWriterMethod(topLevelClass, allFieldsType, "updateByPrimaryKey",
+                    introspectedTable.getUpdateByPrimaryKeyWithBLOBsStatementId());
+        } else if (rules.generateUpdateByPrimaryKeyWithoutBLOBs()) {
+            addWriterMethod(topLevelClass, new FullyQualifiedJavaType(introspectedTable.getBaseRecordType()),
+                    "updateByPrimaryKey", introspectedTable.getUpdateByPrimaryKeyStatementId());
+        }
+
+        Method added = new Method("added");
+        added.setVisibility(JavaVisibility.PRIVATE);
+        added.addBodyLine("pendingCount++;");
+        added.addBodyLine("recordCount++;");
+        added.addBodyLine("if (pendingCount >= flushSize || System.currentTimeMillis() - lastFlushTime >= flushIntervalMillis) {");
+        added.addBodyLine("flush();");
+        added.addBodyLine("}");
+        topLevelClass.addMethod(added);
+
+        Method flush = new Method("flush");
+        flush.setVisibility(JavaVisibility.PUBLIC);
+        flush.setReturnType(batchResultListType);
+        flush.addJavaDocLine("/**");
+        flush.addJavaDocLine(" * 执行缓冲中的语句, 返回每条语句的执行结果. 缓冲为空时不执行, 也不计入flushCount");
+        flush.addJavaDocLine(" */");
+        flush.addBodyLine("if (pendingCount == 0) {");
+        flush.addBodyLine("return Collections.emptyList();");
+        flush.addBodyLine("}");
+        flush.addBodyLine("List<BatchResult> results = sqlSession.flushStatements();");
+        flush.addBodyLine("for (BatchResult result : results) {");
+        flush.addBodyLine("for (int count : result.getUpdateCounts()) {");
+        flush.addBodyLine("// rewriteBatchedStatements时驱动可能返回Statement.SUCCESS_NO_INFO(-2)");
+        flush.addBodyLine("if (count > 0) {");
+        flush.addBodyLine("affectedRows += count;");
+        flush.addBodyLine("}");
+        flush.addBodyLine("}");
+        flush.addBodyLine("}");
+        flush.addBodyLine("flushCount++;");
+        flush.addBodyLine("pendingCount = 0;");
+        flush.addBodyLine("lastFlushTime = System.currentTimeMillis();");
+        flush.addBodyLine("return results;");
+        topLevelClass.addMethod(flush);
+
+        Method commit = new Method("commit");
+        commit.setVisibility(JavaVisibility.PUBLIC);
+        commit.addBodyLine("flush();");
+        commit.addBodyLine("sqlSession.commit();");
+        commit.addBodyLine("commitCount++;");
+        topLevelClass.addMethod(commit);
+
+        Method rollback = new Method("rollback");
+        rollback.setVisibility(JavaVisibility.PUBLIC);
+        rollback.addBodyLine("sqlSession.rollback();");
+        rollback.addBodyLine("pendingCount = 0;");
+        topLevelClass.addMethod(rollback);
+
+        Method close = new Method("close");
+        close.addAnnotation("@Override");
+        close.setVisibility(JavaVisibility.PUBLIC);
+        close.addBodyLine("sqlSession.close();");
+        topLevelClass.addMethod(close);
+
+        for (String statistic : new String[]{"pendingCount", "recordCount", "flushCount", "commitCount", "affectedRows"}) {
+            Method getter = new Method("get" + Character.toUpperCase(statistic.charAt(0)) + statistic.substring(1));
+            getter.setVisibility(JavaVisibility.PUBLIC);
+            getter.setReturnType("pendingCount".equals(statistic) ? FullyQualifiedJavaType.getIntInstance() : longType);
+            getter.addBodyLine("return " + statistic + ";");
+            topLevelClass.addMethod(getter);
+        }
+
+        return new GeneratedJavaFile(topLevelClass,
+                context.getJavaClientGeneratorConfiguration().getTargetProject(),
+                context.getProperty(PropertyRegistry.CONTEXT_JAVA_FILE_ENCODING),
+                context.getJavaFormatter());
+    }
+
+    /**
+     * clientGenerated()中生成的 XxxAsyncMapper, 在contextGenerateAdditionalJavaFiles(IntrospectedTable)中输出.
+     * key:{@link #getTableKey(IntrospectedTable)}
+     */
+    private final Map<String, GeneratedJavaFile> asyncMappers = new HashMap<>();
+
+    /**
+     * 生成 XxxAsyncMapper: 把mapper接口(包括插件添加的方法)的每个方法包装为在executor上执行并返回CompletableFuture的方法,
+     * 用Semaphore限制同时执行的数量. 返回Cursor的方法需要在同一个SqlSession中读取, 不生成异步版本
+     */
+    private GeneratedJavaFile generateAsyncMapper(Interface interfaze, IntrospectedTable introspectedTable) {
+        FullyQualifiedJavaType mapperType = interfaze.getType();
+        FullyQualifiedJavaType asyncType = new FullyQualifiedJavaType(mapperType.getPackageName() + "."
+                + introspectedTable.getFullyQualifiedTable().getDomainObjectName() + "AsyncMapper");
+        FullyQualifiedJavaType executorType = new FullyQualifiedJavaType("java.util.concurrent.Executor");
+        FullyQualifiedJavaType semaphoreType = new FullyQualifiedJavaType("java.util.concurrent.Semaphore");
+        FullyQualifiedJavaType futureType = new FullyQualifiedJavaType("java.util.concurrent.CompletableFuture");
+        FullyQualifiedJavaType supplierType = new FullyQualifiedJavaType("java.util.function.Supplier");
+        FullyQualifiedJavaType queueType = new FullyQualifiedJavaType("java.util.Queue<Runnable>");
+
+        TopLevelClass topLevelClass = new TopLevelClass(asyncType);
+        topLevelClass.setVisibility(JavaVisibility.PUBLIC);
+        topLevelClass.addImportedType(executorType);
+        topLevelClass.addImportedType(semaphoreType);
+        topLevelClass.addImportedType(futureType);
+        topLevelClass.addImportedType(supplierType);
+        topLevelClass.addImportedType(new FullyQualifiedJavaType("java.util.Queue"));
+        topLevelClass.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.ConcurrentLinkedQueue"));
+        topLevelClass.addImportedType(new FullyQualifiedJavaType("java.util.concurrent.RejectedExecutionException"));
+        context.getCommentGenerator().addJavaFileComment(topLevelClass);
+        topLevelClass.addJavaDocLine("/**");
+        topLevelClass.addJavaDocLine(" * " + mapperType.getShortName()
+                + "的异步版本, 每个方法在executor上执行, 同时执行的调用不超过maxConcurrency个.");
+        topLevelClass.addJavaDocLine(" * mapper必须是线程安全的(比如mybatis-spring的SqlSessionTemplate创建的mapper).");
+        topLevelClass.addJavaDocLine(" * 超过maxConcurrency的调用在队列中等待, 有调用结束时才提交给executor, 等待时不占用executor的线程");
+        topLevelClass.addJavaDocLine(" */");
+
+        addWriterField(topLevelClass, mapperType, "mapper", true);
+        addWriterField(topLevelClass, executorType, "executor", true);
+        addWriterField(topLevelClass, semaphoreType, "permits", true);
+        addWriterField(topLevelClass, queueType, "pending", true);
+
+        Method constructor = new Method(asyncType.getShortName());
+        constructor.setConstructor(true);
+        constructor.setVisibility(JavaVisibility.PUBLIC);
+        constructor.addParameter(new Parameter(mapperType, "mapper"));
+        constructor.addParameter(new Parameter(executorType, "executor"));
+        constructor.addBodyLine(String.format("this(mapper, executor, %d);",
+                getPositiveIntProperty("asyncMapperMaxConcurrency", DEFAULT_ASYNC_MAPPER_MAX_CONCURRENCY)));
+        topLevelClass.addMethod(constructor);
+
+        constructor = new Method(asyncType.getShortName());
+        constructor.setConstructor(true);
+        constructor.setVisibility(JavaVisibility.PUBLIC);
+        constructor.addParameter(new Parameter(mapperType, "mapper"));
+        constructor.addParameter(new Parameter(executorType, "executor"));
+        constructor.addParameter(new Parameter(FullyQualifiedJavaType.getIntInstance(), "maxConcurrency"));
+        constructor.addBodyLine("if (maxConcurrency <= 0) {");
+        constructor.addBodyLine("throw new IllegalArgumentException(\"maxConcurrency must be positive\");");
+        constructor.addBodyLine("}");
+        constructor.addBodyLine("this.mapper = mapper;");
+        constructor.addBodyLine("this.executor = executor;");
+        constructor.addBodyLine("this.permits = new Semaphore(maxConcurrency);");
+        constructor.addBodyLine("this.pending = new ConcurrentLinkedQueue<>();");
+        topLevelClass.addMethod(constructor);
+
+        for (Method mapperMethod : interfaze.getMethods()) {
+            FullyQualifiedJavaType returnType = mapperMethod.getReturnType();
+            if (returnType != null && "org.apache.ibatis.cursor.Cursor"
+                    .equals(returnType.getFullyQualifiedNameWithoutTypeParameters())) {
+                continue;
+            }
+
+            FullyQualifiedJavaType resultType;
+            if (returnType == null) {
+                resultType = new FullyQualifiedJavaType("java.lang.Void");
+            } else if (returnType.isPrimitive()) {
+                resultType = returnType.getPrimitiveTypeWrapper();
+            } else {
+                resultType = returnType;
+            }
+            FullyQualifiedJavaType methodReturnType = new FullyQualifiedJavaType("java.util.concurrent.CompletableFuture");
+            methodReturnType.addTypeArgument(resultType);
+            importTypeWithArguments(topLevelClass, resultType);
+
+            Method method = new Method(mapperMethod.getName());
+            method.setVisibility(JavaVisibility.PUBLIC);
+            method.setReturnType(methodReturnType);
+            StringBuilder arguments = new StringBuilder();
+            for (Parameter parameter : mapperMethod.getParameters()) {
+                // 不复制@Param等注解
+                method.addParameter(new Parameter(parameter.getType(), parameter.getName()));
+                importTypeWithArguments(topLevelClass, parameter.getType());
+                if (arguments.length() > 0) {
+                    arguments.append(", ");
+                }
+                arguments.append(parameter.getName());
+            }
+            if (returnType == null) {
+                method.addBodyLine("return submit(() -> {");
+                method.addBodyLine(String.format("mapper.%s(%s);", mapperMethod.getName(), arguments));
+                method.addBodyLine("return null;");
+                method.addBodyLine("});");
+            } else {
+                method.addBodyLine(String.format("return submit(() -> mapper.%s(%s));",
+                        mapperMethod.getName(), arguments));
+            }
+            topLevelClass.addMethod(method);
+        }
+
+        FullyQualifiedJavaType t = new FullyQualifiedJavaType("T");
+        FullyQualifiedJavaType submitReturnType = new FullyQualifiedJavaType("java.util.concurrent.CompletableFuture");
+        submitReturnType.addTypeArgument(t);
+        FullyQualifiedJavaType callType = new FullyQualifiedJavaType("java.util.function.Supplier");
+        callType.addTypeArgument(t);
+        Method submit = new Method("submit");
+        submit.setVisibility(JavaVisibility.PRIVATE);
+        submit.addTypeParameter(new TypeParameter("T"));
+        submit.setReturnType(submitReturnType);
+        submit.addParameter(new Parameter(callType, "call"));
+        submit.addBodyLine("CompletableFuture<T> future = new CompletableFuture<>();");
+        submit.addBodyLine("pending.add(() -> {");
+        submit.addBodyLine("try {");
+        submit.addBodyLine("executor.execute(() -> {");
+        submit.addBodyLine("try {");
+        submit.addBodyLine("future.complete(call.get());");
+        submit.addBodyLine("} catch (Throwable e) {");
+        submit.addBodyLine("future.completeExceptionally(e);");
+        submit.addBodyLine("} finally {");
+        submit.addBodyLine("permits.release();");
+        submit.addBodyLine("dispatch();");
+        submit.addBodyLine("}");
+        submit.addBodyLine("});");
+        submit.addBodyLine("} catch (RejectedExecutionException e) {");
+        submit.addBodyLine("permits.release();");
+        submit.addBodyLine("future.completeExceptionally(e);");
+        submit.addBodyLine("}");
+        submit.addBodyLine("});");
+        submit.addBodyLine("dispatch();");
+        submit.addBodyLine("return future;");
+        topLevelClass.addMethod(submit);
+
+        // 拿到许可后才把等待的调用提交给executor, 拿不到许可的调用留在队列中, 由之后结束的调用提交
+        Method dispatch = new Method("dispatch");
+        dispatch.setVisibility(JavaVisibility.PRIVATE);
+        dispatch.addBodyLine("while (!pending.isEmpty() && permits.tryAcquire()) {");
+        dispatch.addBodyLine("Runnable task = pending.poll();");
+        dispatch.addBodyLine("if (task == null) {");
+        dispatch.addBodyLine("// 队列被其它线程取空了, 归还许可后重新检查");
+        dispatch.addBodyLine("permits.release();");
+        dispatch.addBodyLine("} else {");
+        dispatch.addBodyLine("task.run();");
+        dispatch.addBodyLine("}");
+        dispatch.addBodyLine("}");
+        topLevelClass.addMethod(dispatch);
+
+        return new GeneratedJavaFile(topLevelClass,
+                context.getJavaClientGeneratorConfiguration().getTargetProject(),
+                context.getProperty(PropertyRegistry.CONTEXT_JAVA_FILE_ENCODING),
+                context.getJavaFormatter());
+    }
+
+    // 导入类型本身和所有泛型参数的类型, 比如 List<TUser> 导入java.util.List和TUser
+    private void importTypeWithArguments(TopLevelClass topLevelClass, FullyQualifiedJavaType type) {
+        if (type.isPrimitive()) {
+            return;
+        }
+        topLevelClass.addImportedType(new FullyQualifiedJavaType(type.getFullyQualifiedNameWithoutTypeParameters()));
+        for (FullyQualifiedJavaType typeArgument : type.getTypeArguments()) {
+            importTypeWithArguments(topLevelClass, typeArgument);
+        }
+    }
+
+    private void addWriterField(TopLevelClass topLevelClass, FullyQualifiedJavaType type, String name, boolean isFinal) {
+        Field field = new Field(name, type);
+        field.setVisibility(JavaVisibility.PRIVATE);
+        field.setFinal(isFinal);
+        topLevelClass.addField(field);
+    }
+
+    // 缓冲一条对mapper.<mapperMethodName>()的调用
+    private void addWriterMethod(TopLevelClass topLevelClass, FullyQualifiedJavaType recordType, String name,
+                                 String mapperMethodName) {
+        topLevelClass.addImportedType(recordType);
+        Method method = new Method(name);
+        method.setVisibility(JavaVisibility.PUBLIC);
+        method.addParameter(new Parameter(recordType, "record"));
+        method.addBodyLine(String.format("mapper.%s(record);", mapperMethodName));
+        method.addBodyLine("added();");
+        topLevelClass.addMethod(method);
+    }
+
+    // add select<Projection>ByExample() and select<Projection>ByPrimaryKey() methods
+    private void addProjectionMethods(Interface interfaze, IntrospectedTable introspectedTable) {
+        for (String projectionName : getProjections(introspectedTable).keySet()) {
+            FullyQualifiedJavaType projectionType = getProjectionType(introspectedTable, projectionName);
+            interfaze.addImportedType(projectionType);
+
+            if (introspectedTable.getRules().generateSQLExampleWhereClause()) {
+                Method method = new Method();
+                context.getCommentGenerator().addGeneralMethodComment(method, introspectedTable);
+                method.setName("select" + projectionName + "ByExample");
+                method.setVisibility(JavaVisibility.PUBLIC);
+                FullyQualifiedJavaType returnType = FullyQualifiedJavaType.getNewListInstance();
+                returnType.addTypeArgument(projectionType);
+                interfaze.addImportedType(returnType);
+                method.setReturnType(returnType);
+                method.addParameter(new Parameter(new FullyQualifiedJavaType(introspectedTable.getExampleType()),
+                        "example"));
+                interfaze.addMethod(method);
+            }
+
+            if (introspectedTable.hasPrimaryKeyColumns()) {
+                Method method = new Method();
+                context.getCommentGenerator().addGeneralMethodComment(method, introspectedTable);
+                method.setName("select" + projectionName + "ByPrimaryKey");
+                method.setVisibility(JavaVisibility.PUBLIC);
+                method.setReturnType(projectionType);
+                addPrimaryKeyParameters(interfaze, method, introspectedTable);
+                interfaze.addMethod(method);
+            }
+        }
+    }
+
+    // 同selectManuallyByPrimaryKey(), 主键类使用@Param("key"), 否则每个主键列一个参数
+    private void addPrimaryKeyParameters(Interface interfaze, Method method, IntrospectedTable introspectedTable) {
+        if (introspectedTable.getRules().generatePrimaryKeyClass()) {
+            Parameter key = new Parameter(new FullyQualifiedJavaType(introspectedTable.getPrimaryKeyType()), "key");
+            key.addAnnotation("@Param(\"key\")");
+            method.addParameter(key);
+        } else {
+            for (IntrospectedColumn introspectedColumn : introspectedTable.getPrimaryKeyColumns()) {
+                FullyQualifiedJavaType type = introspectedColumn.getFullyQualifiedJavaType();
+                interfaze.addImportedType(type);
+
+                Parameter parameter = new Parameter(type, introspectedColumn.getJavaProperty());
+                parameter.addAnnotation("@Param(\"" + introspectedColumn.getJavaProperty() + "\")");
+                method.addParameter(parameter);
+            }
+        }
+        interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.annotations.Param"));
+    }
+
+    // 按属性映射的<resultMap>, 用于投影类和ManualResultMap
+    private XmlElement getPropertyResultMapElement(String resultMapId, FullyQualifiedJavaType type,
+                                                   List<IntrospectedColumn> columns, IntrospectedTable introspectedTable) {
+        XmlElement resultMap = new XmlElement("resultMap");
+        context.getCommentGenerator().addComment(resultMap);
+        resultMap.addAttribute(new Attribute("id", resultMapId));
+        resultMap.addAttribute(new Attribute("type", type.getFullyQualifiedName()));
+        for (IntrospectedColumn introspectedColumn : columns) {
+            XmlElement result = new XmlElement(introspectedColumn.isIdentity()
+                    || introspectedTable.getPrimaryKeyColumns().contains(introspectedColumn) ? "id" : "result");
+            result.addAttribute(new Attribute("column",
+                    MyBatis3FormattingUtilities.getRenamedColumnNameForResultMap(introspectedColumn)));
+            result.addAttribute(new Attribute("jdbcType", introspectedColumn.getJdbcTypeName()));
+            result.addAttribute(new Attribute("property", introspectedColumn.getJavaProperty()));
+            if (stringHasValue(introspectedColumn.getTypeHandler())) {
+                result.addAttribute(new Attribute("typeHandler", introspectedColumn.getTypeHandler()));
+            }
+            resultMap.addElement(result);
+        }
+        return resultMap;
+    }
+
+    /**
+     * constructorBased/immutable模型的BaseResultMap使用&lt;constructor&gt;, 需要查询出所有构造方法参数对应的列,
+     * selectManually只查询部分列时改用按属性映射的ManualResultMap, 没有查询的列保持默认值
+     */
+    private boolean useManualResultMap(IntrospectedTable introspectedTable) {
+        return introspectedTable.isConstructorBased()
+                && (isFunctionOpen(FunctionNames.manuallySelect, introspectedTable)
+                || isFunctionOpen(FunctionNames.selectByPrimaryKeys, introspectedTable)
+                && introspectedTable.hasPrimaryKeyColumns());
+    }
+
+    // selectManuallyByExample() / selectManuallyByPrimaryKey() / selectManuallyByPrimaryKeys()使用的resultMap
+    private String getManualResultMapId(IntrospectedTable introspectedTable) {
+        return introspectedTable.isConstructorBased() ? "ManualResultMap" : introspectedTable.getBaseResultMapId();
+    }
+
+    // add <resultMap id="ManualResultMap">, 放在MBG生成的resultMap后面
+    private void addManualResultMapElement(XmlElement parent, IntrospectedTable introspectedTable) {
+        int index = 0;
+        for (int i = 0; i < parent.getElements().size(); i++) {
+            Element element = parent.getElements().get(i);
+            if (element instanceof XmlElement && "resultMap".equals(((XmlElement) element).getName())) {
+                index = i + 1;
+            }
+        }
+        parent.addElement(index, getPropertyResultMapElement(getManualResultMapId(introspectedTable),
+                introspectedTable.getRules().calculateAllFieldsClass(), introspectedTable.getAllColumns(),
+                introspectedTable));
+    }
+
+    /**
+     * &lt;constructor&gt;中基本类型参数的javaType: MyBatis的类型别名"int"/"long"..对应的是包装类,
+     * 按包装类找不到基本类型参数的构造方法, 需要改成"_int"/"_long"..
+     */
+    private static void fixConstructorArgJavaTypes(XmlElement resultMap) {
+        for (Element element : resultMap.getElements()) {
+            if (!(element instanceof XmlElement) || !"constructor".equals(((XmlElement) element).getName())) {
+                continue;
+            }
+            for (Element arg : ((XmlElement) element).getElements()) {
+                if (!(arg instanceof XmlElement)) {
+                    continue;
+                }
+                List<Attribute> attributes = ((XmlElement) arg).getAttributes();
+                for (int i = 0; i < attributes.size(); i++) {
+                    Attribute attribute = attributes.get(i);
+                    if ("javaType".equals(attribute.getName())
+                            && new FullyQualifiedJavaType(attribute.getValue()).isPrimitive()) {
+                        attributes.set(i, new Attribute("javaType", "_" + attribute.getValue()));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * constructorBased/immutable模型中包含所有字段的类(calculateAllFieldsClass):
+     * immutable模型没有无参构造方法, ManualResultMap需要一个private的无参构造方法; immutableModel生成Builder
+     */
+    private void addConstructorBasedModelMethods(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
+        if (!introspectedTable.isConstructorBased() || !topLevelClass.getType().getFullyQualifiedName()
+                .equals(introspectedTable.getRules().calculateAllFieldsClass().getFullyQualifiedName())) {
+            return;
+        }
+        Method constructor = null;
+        for (Method method : topLevelClass.getMethods()) {
+            if (method.isConstructor() && !method.getParameters().isEmpty()) {
+                constructor = method;
+            }
+        }
+        if (constructor == null) {
+            return;
+        }
+        if (introspectedTable.isImmutable() && useManualResultMap(introspectedTable)) {
+            addPrivateDefaultConstructor(topLevelClass, constructor);
+        }
+        if (isFunctionOpen(FunctionNames.immutableModel, introspectedTable)) {
+            addBuilder(topLevelClass, constructor);
+        }
+    }
+
+    // add private Xxx() constructor, ManualResultMap用它创建对象, 再直接给字段赋值(immutable模型没有setter)
+    private void addPrivateDefaultConstructor(TopLevelClass topLevelClass, Method parameterizedConstructor) {
+        StringBuilder arguments = new StringBuilder();
+        for (Parameter parameter : parameterizedConstructor.getParameters()) {
+            if (arguments.length() > 0) {
+                arguments.append(", ");
+            }
+            arguments.append(getDefaultValue(parameter.getType()));
+        }
+        Method method = new Method(topLevelClass.getType().getShortName());
+        method.setConstructor(true);
+        method.setVisibility(JavaVisibility.PRIVATE);
+        method.addBodyLine(String.format("this(%s);", arguments));
+        topLevelClass.addMethod(method);
+    }
+
+    private static String getDefaultValue(FullyQualifiedJavaType type) {
+        if (!type.isPrimitive()) {
+            return "null";
+        }
+        switch (type.getShortName()) {
+            case "boolean":
+                return "false";
+            case "byte":
+                return "(byte) 0";
+            case "short":
+                return "(short) 0";
+            case "long":
+                return "0L";
+            case "float":
+                return "0F";
+            case "double":
+                return "0D";
+            case "char":
+                return "'\\0'";
+            default:
+                return "0";
+        }
+    }
+
+    /**
+     * add Builder / builder() / toBuilder():
+     * TUser.builder().id(1L).userName("a").build(), record.toBuilder().cnt(2).build()复制后修改部分字段
+     */
+    private void addBuilder(TopLevelClass topLevelClass, Method parameterizedConstructor) {
+        FullyQualifiedJavaType recordType = topLevelClass.getType();
+        FullyQualifiedJavaType builderType = new FullyQualifiedJavaType("Builder");
+
+        InnerClass builder = new InnerClass(builderType);
+        builder.setVisibility(JavaVisibility.PUBLIC);
+        builder.setStatic(true);
+        StringBuilder arguments = new StringBuilder();
+        for (Parameter parameter : parameterizedConstructor.getParameters()) {
+            String name = parameter.getName();
+            Field field = new Field(name, parameter.getType());
+            field.setVisibility(JavaVisibility.PRIVATE);
+            builder.addField(field);
+
+            Method method = new Method(name);
+            method.setVisibility(JavaVisibility.PUBLIC);
+            method.setReturnType(builderType);
+            method.addParameter(new Parameter(parameter.getType(), name));
+            method.addBodyLine(String.format("this.%s = %s;", name, name));
+            method.addBodyLine("return this;");
+            builder.addMethod(method);
+
+            if (arguments.length() > 0) {
+                arguments.append(", ");
+            }
+            arguments.append(name);
+        }
+        Method build = new Method("build");
+        build.setVisibility(JavaVisibility.PUBLIC);
+        build.setReturnType(recordType);
+        build.addBodyLine(String.format("return new %s(%s);", recordType.getShortName(), arguments));
+        builder.addMethod(build);
+
+        Method method = new Method("builder");
+        method.setVisibility(JavaVisibility.PUBLIC);
+        method.setStatic(true);
+        method.setReturnType(builderType);
+        method.addBodyLine("return new Builder();");
+        topLevelClass.addMethod(method);
+
+        method = new Method("toBuilder");
+        method.setVisibility(JavaVisibility.PUBLIC);
+        method.setReturnType(builderType);
+        method.addBodyLine("Builder builder = new Builder();");
+        for (Parameter parameter : parameterizedConstructor.getParameters()) {
+            method.addBodyLine(String.format("builder.%s = %s();", parameter.getName(),
+                    JavaBeansUtil.getGetterMethodName(parameter.getName(), parameter.getType())));
+        }
+        method.addBodyLine("return builder;");
+        topLevelClass.addMethod(method);
+
+        topLevelClass.addInnerClass(builder);
+    }
+
+    // add <resultMap> and XML elements for select<Projection>ByExample() and select<Projection>ByPrimaryKey()
+    private void addProjectionElements(XmlElement parent, IntrospectedTable introspectedTable) {
+        for (Map.Entry<String, List<IntrospectedColumn>> entry : getProjections(introspectedTable).entrySet()) {
+            String projectionName = entry.getKey();
+            List<IntrospectedColumn> columns = entry.getValue();
+            String resultMapId = projectionName + "ResultMap";
+
+            parent.addElement(getPropertyResultMapElement(resultMapId,
+                    getProjectionType(introspectedTable, projectionName), columns, introspectedTable));
+
+            StringBuilder selectList = new StringBuilder();
+            for (IntrospectedColumn introspectedColumn : columns) {
+                if (selectList.length() > 0) {
+                    selectList.append(", ");
+                }
+                selectList.append(MyBatis3FormattingUtilities.getSelectListPhrase(introspectedColumn));
+            }
+
+            if (introspectedTable.getRules().generateSQLExampleWhereClause()) {
+                XmlElement element = new XmlElement("select");
+                context.getCommentGenerator().addComment(element);
+                element.addAttribute(new Attribute("id", "select" + projectionName + "ByExample"));
+                element.addAttribute(new Attribute("parameterType", introspectedTable.getExampleType()));
+                element.addAttribute(new Attribute("resultMap", resultMapId));
+
+                element.addElement(new TextElement("select"));
+                XmlElement distinct = new XmlElement("if");
+                distinct.addAttribute(new Attribute("test", "distinct"));
+                distinct.addElement(new TextElement("distinct"));
+                element.addElement(distinct);
+                element.addElement(new TextElement(selectList.toString()));
+                element.addElement(new TextElement("from " + introspectedTable.getAliasedFullyQualifiedTableNameAtRuntime()));
+
+                XmlElement example = new XmlElement("if");
+                example.addAttribute(new Attribute("test", "_parameter != null"));
+                XmlElement include = new XmlElement("include");
+                include.addAttribute(new Attribute("refid", introspectedTable.getExampleWhereClauseId()));
+                example.addElement(include);
+                element.addElement(example);
+
+                XmlElement orderBy = new XmlElement("if");
+                orderBy.addAttribute(new Attribute("test", "orderByClause != null"));
+                orderBy.addElement(new TextElement("order by ${orderByClause}"));
+                element.addElement(orderBy);
+
+                if (isFunctionOpen(FunctionNames.limitAndOffset, introspectedTable)) {
+                    element.addElement(getLimitOffsetClauseElement(null, introspectedTable));
+                }
+                parent.addElement(element);
+            }
+
+            if (introspectedTable.hasPrimaryKeyColumns()) {
+                XmlElement element = new XmlElement("select");
+                context.getCommentGenerator().addComment(element);
+                element.addAttribute(new Attribute("id", "select" + projectionName + "ByPrimaryKey"));
+                element.addAttribute(new Attribute("parameterType", "map"));
+                element.addAttribute(new Attribute("resultMap", resultMapId));
+                element.addElement(new TextElement("select " + selectList));
+                element.addElement(new TextElement("from " + introspectedTable.getAliasedFullyQualifiedTableNameAtRuntime()));
+                addPrimaryKeyWhereClause(element, introspectedTable, true);
+                parent.addElement(element);
+            }
+        }
+    }
+
+    // where a = #{key.a} and b = #{key.b}, 参数同addPrimaryKeyParameters(). aliased: 列名是否带表的别名
+    private void addPrimaryKeyWhereClause(XmlElement element, IntrospectedTable introspectedTable, boolean aliased) {
+        boolean addPrefix = introspectedTable.getRules().generatePrimaryKeyClass();
+        boolean and = false;
+        StringBuilder sb = new StringBuilder();
+        for (IntrospectedColumn introspectedColumn : introspectedTable.getPrimaryKeyColumns()) {
+            sb.setLength(0);
+            if (and) {
+                sb.append("  and ");
+            } else {
+                sb.append("where ");
+                and = true;
+            }
+
+            sb.append(aliased
+                    ? MyBatis3FormattingUtilities.getAliasedEscapedColumnName(introspectedColumn)
+                    : MyBatis3FormattingUtilities.getEscapedColumnName(introspectedColumn));
+            sb.append(" = ");
+            String parameterClause = MyBatis3FormattingUtilities.getParameterClause(introspectedColumn);
+            if (addPrefix) {
+                sb.append(parameterClause.substring(0, 2));
+                sb.append("key.");
+                sb.append(parameterClause.substring(2));
+            } else {
+                sb.append(parameterClause);
+            }
+            element.addElement(new TextElement(sb.toString()));
+        }
+    }
+
+    /**
+     * 可以使用incrementByPrimaryKey()/incrementByExample()增减的列: 非主键, 非自增的数值列,
+     * 表配置了&lt;property name="incrementColumns" value="a, b" /&gt;时只使用其中的列
+     */
+    private List<IntrospectedColumn> getIncrementColumns(IntrospectedTable introspectedTable) {
+        IntrospectedColumn gkColumn = getGeneratedKeyColumn(introspectedTable);
+        List<IntrospectedColumn> candidates = new ArrayList<>();
+        for (IntrospectedColumn introspectedColumn : introspectedTable.getNonPrimaryKeyColumns()) {
+            if (isNumericColumn(introspectedColumn) && !introspectedColumn.isIdentity()
+                    && !introspectedColumn.isAutoIncrement() && introspectedColumn != gkColumn) {
+                candidates.add(introspectedColumn);
+            }
+        }
+
+        String incrementColumns = introspectedTable.getTableConfigurationProperty("incrementColumns");
+        if (!stringHasValue(incrementColumns)) {
+            return candidates;
+        }
+        List<IntrospectedColumn> columns = new ArrayList<>();
+        for (String columnName : incrementColumns.split(",")) {
+            if (!stringHasValue(columnName.trim())) {
+                continue;
+            }
+            IntrospectedColumn introspectedColumn = introspectedTable.getColumn(columnName.trim());
+            if (introspectedColumn == null || !candidates.contains(introspectedColumn)) {
+                throw new RuntimeException(String.format("表 %s 的incrementColumns中的列 %s 不存在或不是非主键的数值列",
+                        introspectedTable.getFullyQualifiedTableNameAtRuntime(), columnName.trim()));
+            }
+            columns.add(introspectedColumn);
+        }
+        return columns;
+    }
+
+    private boolean isNumericColumn(IntrospectedColumn introspectedColumn) {
+        switch (introspectedColumn.getJdbcType()) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.DOUBLE:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // add incrementByPrimaryKey() and incrementByExample() methods
+    private void addIncrementMethods(Interface interfaze, IntrospectedTable introspectedTable) {
+        FullyQualifiedJavaType recordType = introspectedTable.getRules().calculateAllFieldsClass();
+        interfaze.addImportedType(recordType);
+
+        if (introspectedTable.hasPrimaryKeyColumns()) {
+            Method method = new Method();
+            context.getCommentGenerator().addGeneralMethodComment(method, introspectedTable);
+            method.setName("incrementByPrimaryKey");
+            method.setVisibility(JavaVisibility.PUBLIC);
+            method.setReturnType(FullyQualifiedJavaType.getIntInstance());
+            Parameter delta = new Parameter(recordType, "delta");
+            delta.addAnnotation("@Param(\"delta\")");
+            method.addParameter(delta);
+            addPrimaryKeyParameters(interfaze, method, introspectedTable);
+            interfaze.addMethod(method);
+        }
+
+        if (introspectedTable.getRules().generateMyBatis3UpdateByExampleWhereClause()) {
+            Method method = new Method();
+            context.getCommentGenerator().addGeneralMethodComment(method, introspectedTable);
+            method.setName("incrementByExample");
+            method.setVisibility(JavaVisibility.PUBLIC);
+            method.setReturnType(FullyQualifiedJavaType.getIntInstance());
+            Parameter delta = new Parameter(recordType, "delta");
+            delta.addAnnotation("@Param(\"delta\")");
+            method.addParameter(delta);
+            Parameter example = new Parameter(new FullyQualifiedJavaType(introspectedTable.getExampleType()), "example");
+            example.addAnnotation("@Param(\"example\")");
+            method.addParameter(example);
+            interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.annotations.Param"));
+            interfaze.addMethod(method);
+        }
+    }
+
+    /**
+     * add XML elements for incrementByPrimaryKey() and incrementByExample()
+     * <pre>
+     * update t
+     * set
+     *   &lt;if test="delta.a != null"&gt;a = a + #{delta.a},&lt;/if&gt;
+     *   ...
+     *   a = a
+     * where ...
+     * </pre>
+     * delta中为null的列不更新(基本类型的列总是更新), 增量通过参数绑定, 相同的列集合对应相同的sql
+     */
+    private void addIncrementElements(XmlElement parent, IntrospectedTable introspectedTable) {
+        List<IntrospectedColumn> columns = getIncrementColumns(introspectedTable);
+
+        if (introspectedTable.hasPrimaryKeyColumns()) {
+            XmlElement element = new XmlElement("update");
+            context.getCommentGenerator().addComment(element);
+            element.addAttribute(new Attribute("id", "incrementByPrimaryKey"));
+            element.addAttribute(new Attribute("parameterType", "map"));
+            element.addElement(new TextElement("update " + introspectedTable.getFullyQualifiedTableNameAtRuntime()));
+            addIncrementSetClause(element, columns, false);
+            addPrimaryKeyWhereClause(element, introspectedTable, false);
+            parent.addElement(element);
+        }
+
+        if (introspectedTable.getRules().generateMyBatis3UpdateByExampleWhereClause()) {
+            XmlElement element = new XmlElement("update");
+            context.getCommentGenerator().addComment(element);
+            element.addAttribute(new Attribute("id", "incrementByExample"));
+            element.addAttribute(new Attribute("parameterType", "map"));
+            element.addElement(new TextElement("update " + introspectedTable.getAliasedFullyQualifiedTableNameAtRuntime()));
+            addIncrementSetClause(element, columns, true);
+
+            XmlElement example = new XmlElement("if");
+            example.addAttribute(new Attribute("test", "example != null"));
+            XmlElement include = new XmlElement("include");
+            include.addAttribute(new Attribute("refid", introspectedTable.getMyBatis3UpdateByExampleWhereClauseId()));
+            example.addElement(include);
+            element.addElement(example);
+            parent.addElement(element);
+        }
+    }
+
+    private void addIncrementSetClause(XmlElement element, List<IntrospectedColumn> columns, boolean aliased) {
+        element.addElement(new TextElement("set"));
+        for (IntrospectedColumn introspectedColumn : columns) {
+            String columnName = aliased
+                    ? MyBatis3FormattingUtilities.getAliasedEscapedColumnName(introspectedColumn)
+                    : MyBatis3FormattingUtilities.getEscapedColumnName(introspectedColumn);
+            TextElement setElement = new TextElement(String.format("%s = %s + %s,", columnName, columnName,
+                    MyBatis3FormattingUtilities.getParameterClause(introspectedColumn, "delta.")));
+            if (introspectedColumn.getFullyQualifiedJavaType().isPrimitive()) {
+                // 基本类型的增量不会为null, 总是更新, 不需要修改的列增量为0
+                element.addElement(setElement);
+                continue;
+            }
+            XmlElement ifElement = new XmlElement("if");
+            ifElement.addAttribute(new Attribute("test", "delta." + introspectedColumn.getJavaProperty() + " != null"));
+            ifElement.addElement(setElement);
+            element.addElement(ifElement);
+        }
+        // 结束set子句, 同时确保delta全部为null时sql语法正确
+        String first = aliased
+                ? MyBatis3FormattingUtilities.getAliasedEscapedColumnName(columns.get(0))
+                : MyBatis3FormattingUtilities.getEscapedColumnName(columns.get(0));
+        element.addElement(new TextElement(first + " = " + first));
+    }
+
+    /**
+     * keyset分页使用的列: 有主键时使用主键, 没有主键时使用表唯一的UniqueKey, 否则返回空列表.
+     * UniqueKey中的列必须都是NOT NULL: 唯一索引允许多行为NULL, 而NULL与任何值比较都不成立, 这些行会被跳过.
+     * 列的顺序与索引中的顺序一致, 这样 k1 > ? or (k1 = ? and k2 > ?) 和 order by k1, k2 才能走索引
+     */
+    private List<IntrospectedColumn> getKeysetColumns(IntrospectedTable introspectedTable) {
+        if (introspectedTable.hasPrimaryKeyColumns()) {
+            return introspectedTable.getPrimaryKeyColumns();
+        }
+
+        Map<String, Set<String>> uniqueKeys = getUniqueKeys(introspectedTable);
+        if (uniqueKeys.size() != 1) {
+            return Collections.emptyList();
+        }
+
+        List<IntrospectedColumn> columns = new ArrayList<>();
+        for (String columnName : uniqueKeys.values().iterator().next()) {
+            IntrospectedColumn introspectedColumn = introspectedTable.getColumn(columnName);
+            if (introspectedColumn == null // 列被<ignoreColumn>忽略了
+                    || introspectedColumn.isNullable()) {
+                return Collections.emptyList();
+            }
+            columns.add(introspectedColumn);
+        }
+        return columns;
+    }
+
+    // add selectByExampleAfterKey() method
+    private void addSelectByExampleAfterKeyMethod(Interface interfaze, IntrospectedTable introspectedTable) {
+        Method method = new Method();
+        context.getCommentGenerator().addGeneralMethodComment(method, introspectedTable);
+
+        method.setName("selectByExampleAfterKey");
+        method.setVisibility(JavaVisibility.PUBLIC);
+
+        FullyQualifiedJavaType recordType = introspectedTable.getRules().calculateAllFieldsClass();
+        FullyQualifiedJavaType returnType = FullyQualifiedJavaType.getNewListInstance();
+        returnType.addTypeArgument(recordType);
+        interfaze.addImportedType(returnType);
+        interfaze.addImportedType(recordType);
+        method.setReturnType(returnType);
+
+        Parameter example = new Parameter(new FullyQualifiedJavaType(introspectedTable.getExampleType()), "example");
+        example.addAnnotation("@Param(\"example\")");
+        method.addParameter(example);
+        Parameter lastKey = new Parameter(recordType, "lastKey");
+        lastKey.addAnnotation("@Param(\"lastKey\")");
+        method.addParameter(lastKey);
+        Parameter limit = new Parameter(FullyQualifiedJavaType.getIntInstance(), "limit");
+        limit.addAnnotation("@Param(\"limit\")");
+        method.addParameter(limit);
+
+        interfaze.addImportedType(new FullyQualifiedJavaType("org.apache.ibatis.annotations.Param"));
+        interfaze.addMethod(method);
+    }
+
+    // add XML element for selectByExampleAfterKey()
+    private void addSelectByExampleAfterKeyElement(XmlElement parent, IntrospectedTable introspectedTable) {
+        List<IntrospectedColumn> keyColumns = getKeysetColumns(introspectedTable);
+
+        XmlElement element = new XmlElement("select");
+        context.getCommentGenerator().addComment(element);
+
+        element.addAttribute(new Attribute("id", "selectByExampleAfterKey"));
+        element.addAttribute(new Attribute("parameterType", "map"));
+        element.addAttribute(new Attribute("resultMap", introspectedTable.getBaseResultMapId()));
+
+        element.addElement(new TextElement("select"));
+
+        XmlElement distinct = new XmlElement("if");
+        distinct.addAttribute(new Attribute("test", "example != null and example.distinct"));
+        distinct.addElement(new TextElement("distinct"));
+        element.addElement(distinct);
+
+        element.addElement(getBaseColumnListElement(introspectedTable));
+        element.addElement(new TextElement("from " + introspectedTable.getAliasedFullyQualifiedTableNameAtRuntime()));
+
+        StringBuilder columnsClause = new StringBuilder();
+        for (IntrospectedColumn introspectedColumn : keyColumns) {
+            if (columnsClause.length() > 0) {
+                columnsClause.append(", ");
+            }
+            columnsClause.append(MyBatis3FormattingUtilities.getAliasedEscapedColumnName(introspectedColumn));
+        }
+
+        XmlElement where = new XmlElement("where");
+
+        XmlElement afterKey = new XmlElement("if");
+        afterKey.addAttribute(new Attribute("test", "lastKey != null"));
+        if (keyColumns.size() == 1) {
+            afterKey.addElement(new TextElement(getKeyComparison(keyColumns.get(0), " &gt; ")));
+        } else {
+            // 展开成 (k1 > ? or (k1 = ? and k2 > ?) or (k1 = ? and k2 = ? and k3 > ?)),
+            // 不使用行构造器 (k1, k2) > (?, ?): 很多mysql版本不会用它做索引的范围扫描, 深分页时退化成全索引扫描
+            for (int i = 0; i < keyColumns.size(); i++) {
+                StringBuilder sb = new StringBuilder();
+                if (i == 0) {
+                    sb.append('(');
+                } else {
+                    OutputUtilities.xmlIndent(sb, 1);
+                    sb.append("or (");
+                }
+                for (int j = 0; j < i; j++) {
+                    sb.append(getKeyComparison(keyColumns.get(j), " = ")).append(" and ");
+                }
+                sb.append(getKeyComparison(keyColumns.get(i), " &gt; "));
+                if (i > 0) {
+                    sb.append(')');
+                }
+                if (i + 1 == keyColumns.size()) {
+                    sb.append(')');
+                }
+                afterKey.addElement(new TextElement(sb.toString()));
+            }
+        }
+        where.addElement(afterKey);
+
+        // 复用Update_By_Example_Where_Clause中<where>里的内容, 两者不能嵌套使用<where>
+        XmlElement exampleWhere = findExampleWhereElement(parent, introspectedTable);
+        if (exampleWhere != null) {
+            XmlElement example = new XmlElement("if");
+            example.addAttribute(new Attribute("test", "example != null"));
+            XmlElement trim = new XmlElement("trim");
+            trim.addAttribute(new Attribute("prefix", "and ("));
+            trim.addAttribute(new Attribute("suffix", ")"));
+            for (Element e : exampleWhere.getElements()) {
+                trim.addElement(e);
+            }
+            example.addElement(trim);
+            where.addElement(example);
+        }
+        element.addElement(where);
+
+        // keyset分页必须按key排序, 忽略example.orderByClause
+        element.addElement(new TextElement("order by " + columnsClause));
+        element.addElement(new TextElement("limit #{limit,jdbcType=INTEGER}"));
+
+        parent.addElement(element);
+    }
+
+    // alias.k > #{lastKey.k,jdbcType=..}
+    private String getKeyComparison(IntrospectedColumn introspectedColumn, String operator) {
+        String parameterClause = MyBatis3FormattingUtilities.getParameterClause(introspectedColumn);
+        return MyBatis3FormattingUtilities.getAliasedEscapedColumnName(introspectedColumn) + operator
+                + parameterClause.substring(0, 2) + "lastKey." + parameterClause.substring(2);
+    }
+
+    // find the <where> element inside the generated Update_By_Example_Where_Clause
+    private XmlElement findExampleWhereElement(XmlElement root, IntrospectedTable introspectedTable) {
+        for (Element e : root.getElements()) {
+            if (!(e instanceof XmlElement) || !"sql".equals(((XmlElement) e).getName())) {
+                continue;
+            }
+            XmlElement sql = (XmlElement) e;
+            boolean found = false;
+            for (Attribute attribute : sql.getAttributes()) {
+                if ("id".equals(attribute.getName())
+                        && introspectedTable.getMyBatis3UpdateByExampleWhereClauseId().equals(attribute.getValue())) {
+                    found = true;
+                }
+            }
+            if (!found) {
+                continue;
+            }
+            for (Element child : sql.getElements()) {
+                if (child instanceof XmlElement && "where".equals(((XmlElement) child).getName())) {
+                    return (XmlElement) child;
+                }
+            }
+        }
+        return null;
+    }
+
+    // generate <include refid="Base_Column_List" /> or the column list itself
+    private Element getBaseColumnListElement(IntrospectedTable introspectedTable) {
+        if (introspectedTable.getRules().generateBaseColumnList()) {
+            XmlElement include = new XmlElement("include");
+            include.addAttribute(new Attribute("refid", introspectedTable.getBaseColumnListId()));
+            return include;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (IntrospectedColumn introspectedColumn : introspectedTable.getNonBLOBColumns()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(MyBatis3FormattingUtilities.getSelectListPhrase(introspectedColumn));
+        }
+        return new TextElement(sb.toString());
+    }
+
+    // generate <include refid="Blob_Column_List" /> or the column list itself
+    private Element getBlobColumnListElement(IntrospectedTable introspectedTable) {
+        if (introspectedTable.getRules().generateBlobColumnList()) {
+            XmlElement include = new XmlElement("include");
+            include.addAttribute(new Attribute("refid", introspectedTable.getBlobColumnListId()));
+            return include;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (IntrospectedColumn introspectedColumn : introspectedTable.getBLOBColumns()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(MyBatis3FormattingUtilities.getSelectListPhrase(introspectedColumn));
+        }
+        return new TextElement(sb.toString());
+    }
+
     // generate XML element for limit/offset clause
-    private XmlElement getLimitOffsetClauseElement(String prefix) {
+    private XmlElement getLimitOffsetClauseElement(String prefix, IntrospectedTable introspectedTable) {
         if (prefix == null) prefix = "";
 
         XmlElement element = new XmlElement("if");
@@ -1037,10 +3730,11 @@ public class Plugin extends PluginAdapterEx {
 
         XmlElement when = new XmlElement("when");
         when.addAttribute(new Attribute("test", prefix + "offset != null"));
-        when.addElement(new TextElement("limit ${" + prefix + "offset}, ${" + prefix + "limit}"));
+        when.addElement(new TextElement("limit " + getLimitOffsetParameter(prefix + "offset", introspectedTable)
+                + ", " + getLimitOffsetParameter(prefix + "limit", introspectedTable)));
 
         XmlElement otherwise = new XmlElement("otherwise");
-        otherwise.addElement(new TextElement("limit ${" + prefix + "limit}"));
+        otherwise.addElement(new TextElement("limit " + getLimitOffsetParameter(prefix + "limit", introspectedTable)));
 
         choose.addElement(when);
         choose.addElement(otherwise);
@@ -1050,16 +3744,65 @@ public class Plugin extends PluginAdapterEx {
     }
 
     // generate XML element for limit clause
-    private XmlElement getLimitClauseElement(String prefix) {
+    private XmlElement getLimitClauseElement(String prefix, IntrospectedTable introspectedTable) {
         if (prefix == null) prefix = "";
 
         XmlElement element = new XmlElement("if");
         element.addAttribute(new Attribute("test", prefix + "limit != null"));
-        element.addElement(new TextElement("limit ${" + prefix + "limit}"));
+        element.addElement(new TextElement("limit " + getLimitOffsetParameter(prefix + "limit", introspectedTable)));
 
         return element;
     }
 
+    /**
+     * ${limit}会把值直接拼进sql, 每个不同的分页参数都是一条新的sql, 预编译语句缓存(cachePrepStmts/useServerPrepStmts)无法命中;
+     * 打开bindLimitAndOffset后使用#{limit,jdbcType=INTEGER}绑定参数, sql文本不随分页参数变化
+     */
+    private String getLimitOffsetParameter(String name, IntrospectedTable introspectedTable) {
+        if (isFunctionOpen(FunctionNames.bindLimitAndOffset, introspectedTable)) {
+            return "#{" + name + ",jdbcType=INTEGER}";
+        }
+        return "${" + name + "}";
+    }
+
+    // the column of the table's generated key, null if the table has no generated key
+    private IntrospectedColumn getGeneratedKeyColumn(IntrospectedTable introspectedTable) {
+        GeneratedKey gk = introspectedTable.getGeneratedKey();
+        return gk == null ? null : introspectedTable.getColumn(gk.getColumn());
+    }
+
+    /**
+     * 分批方法每批的行数: 配置了propertyName时使用配置的值(必须大于0), 否则为DEFAULT_BATCH_MAX_ROWS,
+     * 并且按每行的占位符数限制, 保证一批的占位符不超过MAX_PLACEHOLDERS (比如131列以上的表一批不到500行)
+     */
+    private int getChunkSize(String propertyName, IntrospectedTable introspectedTable, int placeholdersPerRow) {
+        int maxRows = Math.max(1, MAX_PLACEHOLDERS / Math.max(1, placeholdersPerRow));
+        if (!stringHasValue(properties.getProperty(propertyName))) {
+            return Math.min(DEFAULT_BATCH_MAX_ROWS, maxRows);
+        }
+        int chunkSize = getPositiveIntProperty(propertyName, DEFAULT_BATCH_MAX_ROWS);
+        if (chunkSize > maxRows) {
+            System.out.println(String.format("INFO : 表 %s 每行有 %d 个占位符, %s=%d 时一批超过 %d 个占位符, "
+                            + "useServerPrepStmts=true时会执行失败, 建议不超过 %d",
+                    introspectedTable.getFullyQualifiedTableNameAtRuntime(), placeholdersPerRow,
+                    propertyName, chunkSize, MAX_PLACEHOLDERS, maxRows));
+        }
+        return chunkSize;
+    }
+
+    /**
+     * 为default方法生成分批执行的方法体: 把records按chunkSize拆分后依次调用chunkMethodName, 返回影响行数之和.
+     * 单条sql的大小因此不会超过max_allowed_packet. extraArguments为追加在records后面的参数, 比如 ", columns"
+     */
+    private void addChunkedBodyLines(Method method, String chunkMethodName, String extraArguments, int chunkSize) {
+        method.addBodyLine("int rows = 0;");
+        method.addBodyLine(String.format("for (int i = 0; i < records.size(); i += %d) {", chunkSize));
+        method.addBodyLine(String.format("rows += %s(records.subList(i, Math.min(i + %d, records.size()))%s);",
+                chunkMethodName, chunkSize, extraArguments));
+        method.addBodyLine("}");
+        method.addBodyLine("return rows;");
+    }
+
     // copied from AbstractXmlElementGenerator, used for selectOrUpdateManually() / selectSelectiveOrUpdateManually()
     // should return an XmlElement for the select key used to automatically generate keys.
     private XmlElement getSelectKeyElement(
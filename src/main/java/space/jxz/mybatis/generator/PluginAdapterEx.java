@@ -1,18 +1,28 @@
 package space.jxz.mybatis.generator;
 
+import org.mybatis.generator.api.GeneratedXmlFile;
 import org.mybatis.generator.api.IntrospectedColumn;
 import org.mybatis.generator.api.IntrospectedTable;
 import org.mybatis.generator.api.PluginAdapter;
 import org.mybatis.generator.config.Context;
 import org.mybatis.generator.config.ModelType;
+import org.mybatis.generator.internal.util.StringUtility;
 
+import java.io.File;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.Statement;
+import java.sql.SQLException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @Author Create by jxz
@@ -20,6 +30,8 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public abstract class PluginAdapterEx extends PluginAdapter {
 
+    private static final int DEFAULT_METADATA_POOL_SIZE = 4;
+
     @Override
     public void setProperties(Properties properties) {
         super.setProperties(properties);
@@ -33,6 +45,21 @@ public abstract class PluginAdapterEx extends PluginAdapter {
 
     }
 
+    /**
+     * 所有表的文件都已生成, 这是每次运行中插件最后被调用的地方
+     */
+    public void afterGenerate() {
+        System.out.println("INFO : " + metadataCache.report());
+        closeMetadataSession();
+    }
+
+    @Override
+    public List<GeneratedXmlFile> contextGenerateAdditionalXmlFiles() {
+        // Context#generateFiles()在处理完所有表之后最后调用此方法
+        afterGenerate();
+        return super.contextGenerateAdditionalXmlFiles();
+    }
+
 
     public Connection getConnection() {
         Context context = getContext();
@@ -89,19 +116,474 @@ public abstract class PluginAdapterEx extends PluginAdapter {
 
 
     /**
-     * key tableName
+     * 表结构的指纹: 列(名称, 类型, 长度, 是否可空, 默认值, 注释, java类型, 属性名), 主键, UniqueKey, 表注释,
+     * 以及整个context的配置 (配置变化时所有表都需要重新生成). 任何一项变化都会得到不同的指纹
      */
-    private Map<String, Map<String, Set<String>>> getUniqueKeysCache = new ConcurrentHashMap<>();
+    public String getSchemaFingerprint(IntrospectedTable introspectedTable) {
+        return getSchemaFingerprint(introspectedTable, getContextFingerprint());
+    }
+
+    /**
+     * context的配置包含所有&lt;table&gt;配置, 只计算一次它的摘要, 而不是把整个配置拼到每张表的指纹中
+     */
+    private String getContextFingerprint() {
+        return sha1(getContext().toXmlElement().getFormattedContent(0));
+    }
+
+    private String getSchemaFingerprint(IntrospectedTable introspectedTable, String contextFingerprint) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("context:").append(contextFingerprint).append('\n');
+        for (IntrospectedColumn column : introspectedTable.getAllColumns()) {
+            sb.append(column.getActualColumnName()).append('|')
+                    .append(column.getJdbcTypeName()).append('|')
+                    .append(column.getLength()).append('|')
+                    .append(column.getScale()).append('|')
+                    .append(column.isNullable()).append('|')
+                    .append(column.isAutoIncrement()).append('|')
+                    .append(column.getDefaultValue()).append('|')
+                    .append(column.getRemarks()).append('|')
+                    .append(column.getFullyQualifiedJavaType()).append('|')
+                    .append(column.getJavaProperty()).append('\n');
+        }
+        sb.append("pk:").append(getPrimaryKeyColumnNames(introspectedTable)).append('\n');
+        sb.append("uk:").append(getUniqueKeys(introspectedTable)).append('\n');
+        sb.append("index:").append(getIndexes(introspectedTable)).append('\n');
+        sb.append("comment:").append(getTableComment(introspectedTable)).append('\n');
+
+        return sha1(sb.toString());
+    }
+
+    private static String sha1(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 与retainFirstIntrospectedTable()一样修改introspectedTables列表, 去掉指纹与previousFingerprints中相同的表
+     *
+     * @param previousFingerprints key:{@link #getTableKey(IntrospectedTable)}, value:上次生成时的指纹
+     * @param currentFingerprints  保存所有表(包括被去掉的表)本次的指纹
+     * @return 去掉的表的数量
+     */
+    public int removeUnchangedIntrospectedTables(Properties previousFingerprints, Properties currentFingerprints) {
+        int removed = 0;
+        String contextFingerprint = getContextFingerprint();
+        ListIterator<IntrospectedTable> iterator = getIntrospectTables().listIterator();
+        while (iterator.hasNext()) {
+            IntrospectedTable next = iterator.next();
+            String key = getTableKey(next);
+            String fingerprint = getSchemaFingerprint(next, contextFingerprint);
+            currentFingerprints.setProperty(key, fingerprint);
+            if (fingerprint.equals(previousFingerprints.getProperty(key))) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+
+    /**
+     * 元数据缓存使用的表名.
+     * beforeGenerate()时IntrospectedTable还没有initialize(), IntrospectedTable#getFullyQualifiedTableNameAtRuntime()为null,
+     * 所以使用FullyQualifiedTable中的表名
+     */
+    public String getTableKey(IntrospectedTable introspectedTable) {
+        return introspectedTable.getFullyQualifiedTable().getFullyQualifiedTableNameAtRuntime();
+    }
+
+    /**
+     * key {@link #getTableKey(IntrospectedTable)}
+     */
+    private Map<String, TableMetadata> metadataSnapshot;
+
+    /**
+     * 第一次调用时用几条information_schema查询一次性加载getIntrospectTables()中所有表的元数据,
+     * 之后直接从内存中读取. 表不在快照中时返回null, 调用方应退回到逐表查询
+     *
+     * 配置了metadataSnapshotFile时, 加载后写入快照文件, 并提示fingerprint与上次保存的快照不同的表;
+     * 同时配置了metadataSnapshotOffline时完全不连接数据库, 只使用快照文件
+     */
+    public TableMetadata getTableMetadata(IntrospectedTable introspectedTable) {
+        if (metadataSnapshot == null) {
+            metadataSnapshot = loadTableMetadata(getIntrospectTables());
+        }
+        return metadataSnapshot.get(getTableKey(introspectedTable));
+    }
+
+    public int getIntProperty(String name, int defaultValue) {
+        String value = properties.getProperty(name);
+        if (!StringUtility.stringHasValue(value)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException(String.format("插件属性 %s 的值 %s 不是整数", name, value), e);
+        }
+    }
+
+    /**
+     * 同getIntProperty(), 但值必须大于0. 这些值会作为循环步长/信号量许可数等写进生成的代码, 0或负数会导致死循环或死锁
+     */
+    public int getPositiveIntProperty(String name, int defaultValue) {
+        int value = getIntProperty(name, defaultValue);
+        if (value <= 0) {
+            throw new RuntimeException(String.format("插件属性 %s 的值 %d 必须大于0", name, value));
+        }
+        return value;
+    }
+
+    public File getMetadataSnapshotFile() {
+        String path = properties.getProperty("metadataSnapshotFile");
+        return StringUtility.stringHasValue(path) ? new File(path) : null;
+    }
+
+    public boolean isMetadataSnapshotOffline() {
+        return StringUtility.isTrue(properties.getProperty("metadataSnapshotOffline"));
+    }
+
+    private Map<String, TableMetadata> loadTableMetadata(List<IntrospectedTable> introspectedTables) {
+        File snapshotFile = getMetadataSnapshotFile();
+        Map<String, TableMetadata> previous = snapshotFile == null
+                ? new HashMap<>() : MetadataSnapshot.load(snapshotFile);
+
+        if (isMetadataSnapshotOffline()) {
+            if (snapshotFile == null) {
+                throw new RuntimeException("metadataSnapshotOffline需要同时配置metadataSnapshotFile");
+            }
+            // 离线模式下快照中没有的表当作没有注释, 没有自增列和UniqueKey, 不能退回到逐表查询
+            for (IntrospectedTable introspectedTable : introspectedTables) {
+                if (!previous.containsKey(getTableKey(introspectedTable))) {
+                    System.out.println(String.format("WARN : 元数据快照 %s 中没有表 %s",
+                            snapshotFile, getTableKey(introspectedTable)));
+                    previous.put(getTableKey(introspectedTable), new TableMetadata());
+                }
+            }
+            return previous;
+        }
+
+        int poolSize = getMetadataPoolSize();
+        MetadataSession session = getMetadataSession();
+        Map<String, TableMetadata> snapshot = new HashMap<>();
+        try {
+            // key:table key, value:表所在schema加载的元数据 (key:table name, 不区分大小写)
+            Map<String, Map<String, TableMetadata>> metadataByTable = new HashMap<>();
+            // 查询列和索引的任务, 每个任务查询一个schema中的一部分表
+            List<MetadataTask> tasks = new ArrayList<>();
+
+            String defaultSchema = session.getConnection().getCatalog();
+
+            // key:schema, value:该schema下需要加载的表
+            Map<String, List<IntrospectedTable>> tablesBySchema = new LinkedHashMap<>();
+            for (IntrospectedTable introspectedTable : introspectedTables) {
+                String schema = introspectedTable.getFullyQualifiedTable().getIntrospectedCatalog();
+                tablesBySchema.computeIfAbsent(schema == null ? defaultSchema : schema, k -> new ArrayList<>())
+                        .add(introspectedTable);
+            }
+
+            for (Map.Entry<String, List<IntrospectedTable>> entry : tablesBySchema.entrySet()) {
+                String schema = entry.getKey();
+                Set<String> tableNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+                for (IntrospectedTable introspectedTable : entry.getValue()) {
+                    tableNames.add(introspectedTable.getFullyQualifiedTable().getIntrospectedTableName());
+                }
+
+                Map<String, TableMetadata> schemaMetadata = loadTableComments(session, schema, tableNames);
+                for (IntrospectedTable introspectedTable : entry.getValue()) {
+                    metadataByTable.put(getTableKey(introspectedTable), schemaMetadata);
+                }
+
+                // 每个任务只修改自己那部分表的TableMetadata, schemaMetadata本身不再修改, 可以并发读取
+                for (List<String> partition : partition(new ArrayList<>(schemaMetadata.keySet()), poolSize)) {
+                    tasks.add(taskConnection ->
+                            loadTableStructures(taskConnection, schema, partition, schemaMetadata));
+                }
+            }
+
+            runMetadataTasks(session, tasks, poolSize);
+            if (poolSize > 1) {
+                System.out.println(String.format("INFO : 并行加载 %d 张表的元数据, %d 个查询任务, 共打开了 %d 个连接(1个主连接和最多 %d 个并行查询的连接)",
+                        introspectedTables.size(), tasks.size(), session.getOpenedConnectionCount(), poolSize));
+            }
+
+            for (IntrospectedTable introspectedTable : introspectedTables) {
+                TableMetadata metadata = metadataByTable.get(getTableKey(introspectedTable))
+                        .get(introspectedTable.getFullyQualifiedTable().getIntrospectedTableName());
+                if (metadata != null) {
+                    snapshot.put(getTableKey(introspectedTable), metadata);
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("批量获取表元数据失败", e);
+        }
+
+        if (snapshotFile != null) {
+            int changed = 0;
+            for (Map.Entry<String, TableMetadata> entry : snapshot.entrySet()) {
+                TableMetadata metadata = previous.get(entry.getKey());
+                if (metadata == null || !entry.getValue().getFingerprint().equals(metadata.getFingerprint())) {
+                    changed++;
+                }
+            }
+            System.out.println(String.format("INFO : 元数据快照 %s 中 %d 张表是新增的或者表结构有变化", snapshotFile, changed));
+            // 保留快照中本次没有生成的表
+            previous.putAll(snapshot);
+            MetadataSnapshot.save(snapshotFile, previous);
+        }
+        return snapshot;
+    }
+
+    public boolean isParallelMetadata() {
+        return StringUtility.isTrue(properties.getProperty("parallelMetadata"));
+    }
+
+    /**
+     * 并行加载元数据时并发查询的连接数, 不并行时为1. 加上会话的主连接, 最多同时打开poolSize + 1个连接
+     */
+    public int getMetadataPoolSize() {
+        return isParallelMetadata() ? getPositiveIntProperty("metadataPoolSize", DEFAULT_METADATA_POOL_SIZE) : 1;
+    }
+
+    private MetadataSession metadataSession;
+
+    /**
+     * 插件所有的元数据查询都使用这个会话, 第一次调用时创建, afterGenerate()时关闭
+     */
+    public MetadataSession getMetadataSession() {
+        if (metadataSession == null) {
+            int poolSize = getMetadataPoolSize();
+            metadataSession = new MetadataSession(this::getConnection, poolSize > 1 ? poolSize : 0);
+        }
+        return metadataSession;
+    }
+
+    private void closeMetadataSession() {
+        if (metadataSession == null) {
+            return;
+        }
+        System.out.println("INFO : " + metadataSession.report());
+        try {
+            metadataSession.close();
+        } catch (SQLException e) {
+            System.out.println("WARN : 关闭元数据连接失败: " + e.getMessage());
+        }
+        metadataSession = null;
+    }
+
+    /**
+     * 使用一个数据库连接执行的元数据查询
+     */
+    private interface MetadataTask {
+        void run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * poolSize为1时在当前线程使用会话的主连接依次执行,
+     * 否则在最多poolSize个线程中并发执行, 每个任务从会话租用一个连接(不使用主连接), 等待所有任务结束
+     */
+    private static void runMetadataTasks(MetadataSession session, List<MetadataTask> tasks, int poolSize)
+            throws Exception {
+        if (poolSize <= 1 || tasks.size() <= 1) {
+            for (MetadataTask task : tasks) {
+                task.run(session.getConnection());
+            }
+            return;
+        }
+        List<Callable<Void>> callables = new ArrayList<>();
+        for (MetadataTask task : tasks) {
+            callables.add(() -> {
+                Connection connection = session.lease();
+                try {
+                    task.run(connection);
+                } finally {
+                    session.release(connection);
+                }
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(poolSize, tasks.size()), runnable -> {
+            Thread thread = new Thread(runnable, "mbg-plugin-metadata");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (Future<Void> future : executor.invokeAll(callables)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 把list分成最多parts份, 每份大小相差不超过1
+     */
+    private static <T> List<List<T>> partition(List<T> list, int parts) {
+        if (parts < 1) {
+            throw new IllegalArgumentException("parts必须大于0: " + parts);
+        }
+        List<List<T>> partitions = new ArrayList<>();
+        if (list.isEmpty()) {
+            return partitions;
+        }
+        int size = (list.size() + parts - 1) / parts;
+        for (int i = 0; i < list.size(); i += size) {
+            partitions.add(list.subList(i, Math.min(i + size, list.size())));
+        }
+        return partitions;
+    }
+
+    /**
+     * 一次查询schema中所有表的注释
+     *
+     * @param tableNames 需要加载的表
+     * @return key:table name(不区分大小写), value:表的元数据, 只包含数据库中存在的表
+     */
+    private Map<String, TableMetadata> loadTableComments(MetadataSession session, String schema,
+                                                        Set<String> tableNames)
+            throws SQLException {
+        Map<String, TableMetadata> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        // 多个schema复用同一个statement
+        PreparedStatement statement = session.prepare(
+                "select TABLE_NAME, TABLE_COMMENT from information_schema.tables where table_schema = ?");
+        statement.setString(1, schema);
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                String tableName = rs.getString("TABLE_NAME");
+                if (!tableNames.contains(tableName)) {
+                    continue;
+                }
+                TableMetadata metadata = new TableMetadata();
+                metadata.setComment(rs.getString("TABLE_COMMENT"));
+                map.put(tableName, metadata);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * 查询tables的列和索引, 得到自增列, UniqueKey, 普通索引和表结构的指纹, 写入metadataByName中对应的TableMetadata.
+     * 指纹是information_schema.columns和statistics中该表的行(列名, 类型, 是否可空, EXTRA, 索引名, 是否唯一, 索引中的列)的摘要.
+     * 不使用information_schema.tables的CREATE_TIME/UPDATE_TIME: mysql 8中它们受information_schema_stats_expiry缓存影响,
+     * 表结构变化后可能很久不更新, 而UPDATE_TIME在每次写入数据后都会变化
+     */
+    private static void loadTableStructures(Connection connection, String schema, List<String> tables,
+                                            Map<String, TableMetadata> metadataByName)
+            throws SQLException {
+        String tableFilter = " and TABLE_NAME in (" + placeholders(tables.size()) + ")";
+        // key:table name, value:表结构, 按列和索引中的顺序拼接
+        Map<String, StringBuilder> structures = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        try (PreparedStatement statement = connection.prepareStatement(
+                "select TABLE_NAME, COLUMN_NAME, COLUMN_TYPE, IS_NULLABLE, EXTRA from information_schema.columns " +
+                        "where table_schema = ?" + tableFilter + " order by TABLE_NAME, ORDINAL_POSITION")) {
+            bindSchemaAndTables(statement, schema, tables);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    TableMetadata metadata = metadataByName.get(rs.getString("TABLE_NAME"));
+                    if (metadata == null) {
+                        continue;
+                    }
+                    appendTableStructure(rs, "column:", structures);
+                    String extra = rs.getString("EXTRA");
+                    if (extra != null && extra.toLowerCase().contains("auto_increment")) {
+                        metadata.setAutoIncrementColumnName(rs.getString("COLUMN_NAME"));
+                    }
+                }
+            }
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(
+                "select TABLE_NAME, INDEX_NAME, NON_UNIQUE, SEQ_IN_INDEX, COLUMN_NAME from information_schema.statistics " +
+                        "where table_schema = ?" + tableFilter + " order by TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX")) {
+            bindSchemaAndTables(statement, schema, tables);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    TableMetadata metadata = metadataByName.get(rs.getString("TABLE_NAME"));
+                    if (metadata == null) {
+                        continue;
+                    }
+                    appendTableStructure(rs, "index:", structures);
+                    (rs.getInt("NON_UNIQUE") == 0 ? metadata.getUniqueKeys() : metadata.getIndexes())
+                            .computeIfAbsent(rs.getString("INDEX_NAME"), k -> new LinkedHashSet<>())
+                            .add(rs.getString("COLUMN_NAME"));
+                }
+            }
+        }
+
+        for (String tableName : tables) {
+            StringBuilder structure = structures.get(tableName);
+            metadataByName.get(tableName).setFingerprint(sha1(structure == null ? "" : structure.toString()));
+        }
+    }
+
+    /**
+     * 把当前行(第一列为TABLE_NAME)的其余列追加到对应表的结构中
+     */
+    private static void appendTableStructure(ResultSet rs, String prefix, Map<String, StringBuilder> structures)
+            throws SQLException {
+        int columnCount = rs.getMetaData().getColumnCount();
+        StringBuilder sb = structures.computeIfAbsent(rs.getString(1), k -> new StringBuilder());
+        sb.append(prefix);
+        for (int i = 2; i <= columnCount; i++) {
+            sb.append(rs.getString(i)).append('|');
+        }
+        sb.append('\n');
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    private static void bindSchemaAndTables(PreparedStatement statement, String schema, List<String> tableNames)
+            throws SQLException {
+        statement.setString(1, schema);
+        for (int i = 0; i < tableNames.size(); i++) {
+            statement.setString(i + 2, tableNames.get(i));
+        }
+    }
+
+
+    /**
+     * 本次运行的元数据缓存, 覆盖表注释, 自增列, UniqueKey, 普通索引和主键
+     */
+    private final MetadataCache metadataCache = new MetadataCache();
+
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
 
     /**
      * @return key:index name, value:set of column name
      */
     public Map<String, Set<String>> getUniqueKeys(IntrospectedTable introspectedTable) {
-        return getUniqueKeysCache.computeIfAbsent(introspectedTable.getFullyQualifiedTableNameAtRuntime(), (key) -> {
+        return metadataCache.get(MetadataCache.Kind.UNIQUE_KEYS, getTableKey(introspectedTable), (key) -> {
+            TableMetadata metadata = getTableMetadata(introspectedTable);
+            if (metadata != null) {
+                return metadata.getUniqueKeys();
+            }
 
-            Map<String, Set<String>> map = new HashMap<>();
-            try (Connection connection = getConnection();
-                 ResultSet rs = connection.getMetaData().getIndexInfo(
+            // 与TableMetadata中的顺序相同, 不依赖getIndexInfo()返回的顺序
+            Map<String, Set<String>> map = new TreeMap<>(TableMetadata.INDEX_NAME_ORDER);
+            try (ResultSet rs = getMetadataSession().getConnection().getMetaData().getIndexInfo(
                          introspectedTable.getTableConfiguration().getCatalog(),
                          introspectedTable.getTableConfiguration().getSchema(),
                          introspectedTable.getFullyQualifiedTableNameAtRuntime(),
@@ -109,7 +591,8 @@ public abstract class PluginAdapterEx extends PluginAdapter {
                 while (rs.next()) {
                     String indexName = rs.getString("INDEX_NAME");
                     String columnName = rs.getString("COLUMN_NAME");
-                    Set<String> set = map.computeIfAbsent(indexName, k -> new HashSet<>());
+                    // getIndexInfo()按ORDINAL_POSITION排序, 用LinkedHashSet保留索引中列的顺序
+                    Set<String> set = map.computeIfAbsent(indexName, k -> new LinkedHashSet<>());
                     set.add(columnName);
                 }
                 return map;
@@ -121,38 +604,80 @@ public abstract class PluginAdapterEx extends PluginAdapter {
     }
 
 
+    /**
+     * 非唯一索引, 用于校验Example中的索引提示
+     *
+     * @return key:index name, value:set of column name
+     */
+    public Map<String, Set<String>> getIndexes(IntrospectedTable introspectedTable) {
+        return metadataCache.get(MetadataCache.Kind.INDEXES, getTableKey(introspectedTable), (key) -> {
+            TableMetadata metadata = getTableMetadata(introspectedTable);
+            if (metadata != null) {
+                return metadata.getIndexes();
+            }
+
+            Map<String, Set<String>> map = new TreeMap<>(TableMetadata.INDEX_NAME_ORDER);
+            try (ResultSet rs = getMetadataSession().getConnection().getMetaData().getIndexInfo(
+                         introspectedTable.getTableConfiguration().getCatalog(),
+                         introspectedTable.getTableConfiguration().getSchema(),
+                         introspectedTable.getFullyQualifiedTableNameAtRuntime(),
+                         false, false);) {
+                while (rs.next()) {
+                    String indexName = rs.getString("INDEX_NAME");
+                    // 跳过统计信息行(tableIndexStatistic没有索引名)和唯一索引
+                    if (indexName == null || !rs.getBoolean("NON_UNIQUE")) {
+                        continue;
+                    }
+                    map.computeIfAbsent(indexName, k -> new LinkedHashSet<>()).add(rs.getString("COLUMN_NAME"));
+                }
+                return map;
+            } catch (Exception e) {
+                throw new RuntimeException("获取索引信息失败", e);
+            }
+        });
+    }
+
     /**
      * 获取自增列名, 不存在自增列时返回null
      * @param introspectedTable
      * @return
      */
     public String getAutoIncrementColumnName(IntrospectedTable introspectedTable) {
-        try (Connection connection = getConnection();
-             Statement statement = connection.prepareStatement(
-                     "SHOW COLUMNS FROM " + introspectedTable.getFullyQualifiedTable());
-             ResultSet rs = ((PreparedStatement) statement).executeQuery()) {
+        return metadataCache.get(MetadataCache.Kind.AUTO_INCREMENT_COLUMN,
+                getTableKey(introspectedTable),
+                key -> fetchAutoIncrementColumnName(introspectedTable));
+    }
 
-            while (rs.next()) {
-                String extra = rs.getString("Extra");
-                if (extra.contains("auto_increment")) {
-                    return rs.getString("Field");
-                }
-            }
+    private String fetchAutoIncrementColumnName(IntrospectedTable introspectedTable) {
+        TableMetadata metadata = getTableMetadata(introspectedTable);
+        if (metadata != null) {
+            return metadata.getAutoIncrementColumnName();
+        }
 
-            return null;
+        try {
+            PreparedStatement statement = getMetadataSession().prepare(
+                    "select COLUMN_NAME from information_schema.columns " +
+                            "where table_schema = ? and table_name = ? and EXTRA like '%auto_increment%'");
+            statement.setString(1, getTableSchema(introspectedTable));
+            statement.setString(2, introspectedTable.getFullyQualifiedTable().getIntrospectedTableName());
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
         } catch (Exception e) {
-            throw new RuntimeException("获取表注释失败", e);
+            throw new RuntimeException("获取自增列失败", e);
         }
     }
 
 
     public Set<String> getPrimaryKeyColumnNames(IntrospectedTable introspectedTable) {
-        List<IntrospectedColumn> primaryKeyColumns = introspectedTable.getPrimaryKeyColumns();
-        Set<String> pkNames = new HashSet<>();
-        for (IntrospectedColumn primaryKeyColumn : primaryKeyColumns) {
-            pkNames.add(primaryKeyColumn.getActualColumnName());
-        }
-        return pkNames;
+        return metadataCache.get(MetadataCache.Kind.PRIMARY_KEYS, getTableKey(introspectedTable), key -> {
+                    List<IntrospectedColumn> primaryKeyColumns = introspectedTable.getPrimaryKeyColumns();
+                    Set<String> pkNames = new LinkedHashSet<>();
+                    for (IntrospectedColumn primaryKeyColumn : primaryKeyColumns) {
+                        pkNames.add(primaryKeyColumn.getActualColumnName());
+                    }
+                    return pkNames;
+                });
     }
 
     /**
@@ -161,19 +686,39 @@ public abstract class PluginAdapterEx extends PluginAdapter {
      * 2 connection.getMetaData().getTables(..).getString("REMARKS")
      */
     public String getTableComment(IntrospectedTable introspectedTable) {
-        try (Connection connection = getConnection();
-             Statement statement = connection.prepareStatement(String.format(
-                     "select TABLE_COMMENT from information_schema.tables " +
-                             "where table_schema='%s' and table_name = '%s'",
-                     connection.getCatalog(), introspectedTable.getFullyQualifiedTableNameAtRuntime()));
-             ResultSet rs = ((PreparedStatement) statement).executeQuery()) {
-            rs.next();
-            return rs.getString(1);
+        return metadataCache.get(MetadataCache.Kind.TABLE_COMMENT,
+                getTableKey(introspectedTable),
+                key -> fetchTableComment(introspectedTable));
+    }
+
+    private String fetchTableComment(IntrospectedTable introspectedTable) {
+        TableMetadata metadata = getTableMetadata(introspectedTable);
+        if (metadata != null) {
+            return metadata.getComment();
+        }
+
+        try {
+            PreparedStatement statement = getMetadataSession().prepare(
+                    "select TABLE_COMMENT from information_schema.tables where table_schema = ? and table_name = ?");
+            statement.setString(1, getTableSchema(introspectedTable));
+            statement.setString(2, introspectedTable.getFullyQualifiedTable().getIntrospectedTableName());
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return rs.getString(1);
+            }
         } catch (Exception e) {
             throw new RuntimeException("获取表注释失败", e);
         }
     }
 
+    /**
+     * mysql中catalog即schema, 没有指定时使用连接的默认schema
+     */
+    private String getTableSchema(IntrospectedTable introspectedTable) throws SQLException {
+        String schema = introspectedTable.getFullyQualifiedTable().getIntrospectedCatalog();
+        return schema != null ? schema : getMetadataSession().getConnection().getCatalog();
+    }
+
 
 
 }
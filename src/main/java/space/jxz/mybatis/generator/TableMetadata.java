@@ -0,0 +1,74 @@
+package space.jxz.mybatis.generator;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 一张表的元数据 (表注释, 自增列, UniqueKey, 普通索引), 由{@link PluginAdapterEx}一次性批量加载, 可以保存到{@link MetadataSnapshot}
+ */
+public class TableMetadata {
+
+    /**
+     * UniqueKey和索引的顺序: PRIMARY在最前面, 其余按索引名排序.
+     * 在线加载和读取快照时都使用这个顺序, 同一张表的表结构得到相同的指纹和相同的生成代码
+     */
+    public static final Comparator<String> INDEX_NAME_ORDER = Comparator
+            .comparing((String indexName) -> !"PRIMARY".equals(indexName))
+            .thenComparing(Comparator.naturalOrder());
+
+    /**
+     * 表结构(information_schema.columns和statistics)的摘要, 用于判断本地快照中的元数据是否过期
+     */
+    private String fingerprint;
+
+    private String comment;
+
+    private String autoIncrementColumnName;
+
+    /**
+     * key:index name, value:set of column name, 列按在索引中的顺序排列, 索引按{@link #INDEX_NAME_ORDER}排列
+     */
+    private final Map<String, Set<String>> uniqueKeys = new TreeMap<>(INDEX_NAME_ORDER);
+
+    /**
+     * 非唯一索引, key:index name, value:set of column name (唯一索引在uniqueKeys中)
+     */
+    private final Map<String, Set<String>> indexes = new TreeMap<>(INDEX_NAME_ORDER);
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+
+    public void setComment(String comment) {
+        this.comment = comment;
+    }
+
+    /**
+     * 不存在自增列时返回null
+     */
+    public String getAutoIncrementColumnName() {
+        return autoIncrementColumnName;
+    }
+
+    public void setAutoIncrementColumnName(String autoIncrementColumnName) {
+        this.autoIncrementColumnName = autoIncrementColumnName;
+    }
+
+    public Map<String, Set<String>> getUniqueKeys() {
+        return uniqueKeys;
+    }
+
+    public Map<String, Set<String>> getIndexes() {
+        return indexes;
+    }
+}
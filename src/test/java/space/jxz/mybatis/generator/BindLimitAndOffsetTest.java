@@ -0,0 +1,56 @@
+package space.jxz.mybatis.generator;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mybatis.generator.api.MyBatisGenerator;
+
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BindLimitAndOffsetTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void differentPagesShareTheSameSql() throws Exception {
+        String url = GeneratorTestSupport.createDatabase(
+                "create table t_user (id bigint auto_increment primary key, name varchar(20))");
+        Properties properties = new Properties();
+        properties.setProperty("limitAndOffset", "true");
+        properties.setProperty("bindLimitAndOffset", "true");
+        MyBatisGenerator generator = GeneratorTestSupport.generate(url, Plugin.class, properties,
+                Collections.singletonMap("t_user", new Properties()), temporaryFolder.newFolder("target"));
+
+        ClassLoader classLoader = GeneratorTestSupport.compile(generator, temporaryFolder.getRoot());
+        Configuration configuration = GeneratorTestSupport.loadMapperConfiguration(generator, classLoader,
+                "TUserMapper.xml");
+        MappedStatement statement = configuration.getMappedStatement("test.mapper.TUserMapper.selectByExample");
+
+        Class<?> exampleType = classLoader.loadClass("test.model.TUserExample");
+        String firstPage = getSql(statement, newExample(exampleType, 10, 0));
+        String thirdPage = getSql(statement, newExample(exampleType, 20, 40));
+
+        assertEquals(firstPage, thirdPage);
+        assertTrue(firstPage, firstPage.contains("limit ?, ?"));
+    }
+
+    private static Object newExample(Class<?> exampleType, int limit, int offset) throws Exception {
+        Object example = exampleType.newInstance();
+        exampleType.getMethod("setLimit", Integer.class).invoke(example, limit);
+        exampleType.getMethod("setOffset", Integer.class).invoke(example, offset);
+        return example;
+    }
+
+    private static String getSql(MappedStatement statement, Object example) {
+        BoundSql boundSql = statement.getBoundSql(example);
+        return boundSql.getSql().replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,80 @@
+package space.jxz.mybatis.generator;
+
+import org.apache.ibatis.session.Configuration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mybatis.generator.api.MyBatisGenerator;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class CacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static String createDatabase() throws Exception {
+        return GeneratorTestSupport.createDatabase(
+                "create table t_user (id bigint auto_increment primary key, name varchar(20))",
+                "create table t_log (id bigint auto_increment primary key, message varchar(200))");
+    }
+
+    @Test
+    public void cachedTablesFlushOnWritesAndSkipStreamingSelects() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("streamingSelect", "true");
+        Map<String, Properties> tables = new LinkedHashMap<>();
+        Properties userProperties = new Properties();
+        userProperties.setProperty("cache", "true");
+        userProperties.setProperty("cache.eviction", "LRU");
+        userProperties.setProperty("cache.size", "512");
+        tables.put("t_user", userProperties);
+        Properties logProperties = new Properties();
+        logProperties.setProperty("cache", "true");
+        logProperties.setProperty("cache.readOnly", "true");
+        tables.put("t_log", logProperties);
+        MyBatisGenerator generator = GeneratorTestSupport.generate(createDatabase(), Plugin.class, properties,
+                tables, temporaryFolder.newFolder("target"));
+
+        assertTrue(GeneratorTestSupport.getXmlContent(generator, "TUserMapper.xml")
+                .contains("<cache eviction=\"LRU\" size=\"512\""));
+
+        ClassLoader classLoader = GeneratorTestSupport.compile(generator, temporaryFolder.getRoot());
+        Configuration configuration = GeneratorTestSupport.loadMapperConfiguration(generator, classLoader,
+                "TUserMapper.xml", "TLogMapper.xml");
+        assertEquals("test.mapper.TUserMapper",
+                configuration.getMappedStatement("test.mapper.TUserMapper.selectByExample").getCache().getId());
+        for (String id : new String[]{"insert", "insertSelective", "updateByExample", "updateByPrimaryKey",
+                "deleteByExample", "deleteByPrimaryKey"}) {
+            assertTrue(id, configuration.getMappedStatement("test.mapper.TUserMapper." + id).isFlushCacheRequired());
+        }
+        assertTrue(configuration.getMappedStatement("test.mapper.TUserMapper.selectByExample").isUseCache());
+        assertTrue(configuration.getMappedStatement("test.mapper.TUserMapper.selectByPrimaryKey").isUseCache());
+        assertFalse(configuration.getMappedStatement("test.mapper.TUserMapper.selectByExampleWithCursor").isUseCache());
+        assertFalse(configuration.getMappedStatement("test.mapper.TUserMapper.selectByExampleWithResultHandler")
+                .isUseCache());
+
+        // readOnly为false的缓存保存序列化后的结果
+        assertTrue(Serializable.class.isAssignableFrom(classLoader.loadClass("test.model.TUser")));
+        assertFalse(Serializable.class.isAssignableFrom(classLoader.loadClass("test.model.TLog")));
+    }
+
+    @Test
+    public void rejectsInvalidCacheProperties() throws Exception {
+        String url = createDatabase();
+        Properties userProperties = new Properties();
+        userProperties.setProperty("cache", "true");
+        userProperties.setProperty("cache.size", "0");
+        assertThrows(RuntimeException.class, () -> GeneratorTestSupport.generate(url, Plugin.class, new Properties(),
+                Collections.singletonMap("t_user", userProperties), temporaryFolder.newFolder("target")));
+    }
+}
@@ -0,0 +1,47 @@
+package space.jxz.mybatis.generator;
+
+import org.apache.ibatis.session.Configuration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mybatis.generator.api.MyBatisGenerator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+
+public class ColumnMaskTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void singleLetterPropertiesMatchTheColumnMask() throws Exception {
+        String url = GeneratorTestSupport.createDatabase(
+                "create table t_point (id bigint primary key, x int, y int)");
+        Properties properties = new Properties();
+        properties.setProperty("batchInsertOrUpdate", "true");
+        MyBatisGenerator generator = GeneratorTestSupport.generate(url, Plugin.class, properties,
+                Collections.singletonMap("t_point", new Properties()), temporaryFolder.newFolder("target"));
+
+        ClassLoader classLoader = GeneratorTestSupport.compile(generator, temporaryFolder.getRoot());
+        Configuration configuration = GeneratorTestSupport.loadMapperConfiguration(generator, classLoader,
+                "TPointMapper.xml");
+
+        Object record = classLoader.loadClass("test.model.TPoint").newInstance();
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("records", Collections.singletonList(record));
+        parameter.put("columns", new HashSet<>(Arrays.asList("id", "x")));
+        String sql = configuration
+                .getMappedStatement("test.mapper.TPointMapper.batchInsertSelectiveOrUpdateByUniqueKeySelectiveChunk")
+                .getBoundSql(parameter).getSql().replaceAll("\\s+", " ");
+
+        assertEquals("insert into T_POINT ( ID, X ) values ( ?, ? ) on duplicate key update X = values(X), ID = ID",
+                sql.trim());
+    }
+}
@@ -0,0 +1,249 @@
+package space.jxz.mybatis.generator;
+
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.mybatis.generator.api.ConnectionFactory;
+import org.mybatis.generator.api.GeneratedJavaFile;
+import org.mybatis.generator.api.GeneratedXmlFile;
+import org.mybatis.generator.api.MyBatisGenerator;
+import org.mybatis.generator.config.CommentGeneratorConfiguration;
+import org.mybatis.generator.config.Configuration;
+import org.mybatis.generator.config.ConnectionFactoryConfiguration;
+import org.mybatis.generator.config.Context;
+import org.mybatis.generator.config.JavaClientGeneratorConfiguration;
+import org.mybatis.generator.config.JavaModelGeneratorConfiguration;
+import org.mybatis.generator.config.ModelType;
+import org.mybatis.generator.config.PluginConfiguration;
+import org.mybatis.generator.config.SqlMapGeneratorConfiguration;
+import org.mybatis.generator.config.TableConfiguration;
+import org.mybatis.generator.internal.DefaultShellCallback;
+import org.mybatis.generator.internal.NullProgressCallback;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 在H2内存数据库(MySQL模式)上运行MBG和插件.
+ * H2没有MySQL的information_schema.tables/columns/statistics, 用mysql_information_schema中的同名视图模拟,
+ * 插件通过H2ConnectionFactory拿到的连接执行sql时把information_schema替换为mysql_information_schema
+ */
+final class GeneratorTestSupport {
+
+    private static final AtomicInteger DATABASE_ID = new AtomicInteger();
+
+    private static final Pattern INFORMATION_SCHEMA = Pattern.compile("\\binformation_schema\\.",
+            Pattern.CASE_INSENSITIVE);
+
+    private GeneratorTestSupport() {
+    }
+
+    /**
+     * 创建一个新的内存数据库并执行ddl
+     *
+     * @return jdbc url
+     */
+    static String createDatabase(String... ddl) throws SQLException {
+        String url = "jdbc:h2:mem:mbg" + DATABASE_ID.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("create schema mysql_information_schema");
+            statement.execute("create view mysql_information_schema.tables as " +
+                    "select TABLE_CATALOG as TABLE_SCHEMA, TABLE_NAME, REMARKS as TABLE_COMMENT " +
+                    "from information_schema.tables where TABLE_SCHEMA = 'PUBLIC'");
+            statement.execute("create view mysql_information_schema.columns as " +
+                    "select TABLE_CATALOG as TABLE_SCHEMA, TABLE_NAME, COLUMN_NAME, ORDINAL_POSITION, " +
+                    "COLUMN_DEFAULT, IS_NULLABLE, TYPE_NAME as COLUMN_TYPE, " +
+                    "case when SEQUENCE_NAME is null then '' else 'auto_increment' end as EXTRA " +
+                    "from information_schema.columns where TABLE_SCHEMA = 'PUBLIC'");
+            statement.execute("create view mysql_information_schema.statistics as " +
+                    "select TABLE_CATALOG as TABLE_SCHEMA, TABLE_NAME, " +
+                    "case when NON_UNIQUE then 1 else 0 end as NON_UNIQUE, " +
+                    "case when PRIMARY_KEY then 'PRIMARY' else INDEX_NAME end as INDEX_NAME, " +
+                    "ORDINAL_POSITION as SEQ_IN_INDEX, COLUMN_NAME " +
+                    "from information_schema.indexes where TABLE_SCHEMA = 'PUBLIC'");
+            for (String sql : ddl) {
+                statement.execute(sql);
+            }
+        }
+        return url;
+    }
+
+    /**
+     * 不写文件, 生成的内容通过MyBatisGenerator#getGeneratedJavaFiles()/getGeneratedXmlFiles()获取
+     *
+     * @param tablePluginProperties key:table name, value:<table>中的property
+     * @param targetProject         各生成器的targetProject, 使用测试的临时目录, 不依赖工作目录
+     */
+    static MyBatisGenerator generate(String url, Class<? extends Plugin> pluginType, Properties pluginProperties,
+                                     Map<String, Properties> tablePluginProperties, File targetProject)
+            throws Exception {
+        return generate(url, pluginType, pluginProperties, tablePluginProperties, targetProject, true);
+    }
+
+    /**
+     * @param suppressAllComments 为false时使用MBG默认的注释, 生成的xml语句开头有&lt;!-- .. --&gt;注释
+     */
+    static MyBatisGenerator generate(String url, Class<? extends Plugin> pluginType, Properties pluginProperties,
+                                     Map<String, Properties> tablePluginProperties, File targetProject,
+                                     boolean suppressAllComments) throws Exception {
+        Context context = new Context(ModelType.FLAT);
+        context.setId("test");
+        context.setTargetRuntime("MyBatis3");
+
+        ConnectionFactoryConfiguration connectionFactory = new ConnectionFactoryConfiguration();
+        connectionFactory.setConfigurationType(H2ConnectionFactory.class.getName());
+        connectionFactory.addProperty("url", url);
+        context.setConnectionFactoryConfiguration(connectionFactory);
+
+        CommentGeneratorConfiguration commentGenerator = new CommentGeneratorConfiguration();
+        commentGenerator.addProperty("suppressAllComments", String.valueOf(suppressAllComments));
+        context.setCommentGeneratorConfiguration(commentGenerator);
+
+        JavaModelGeneratorConfiguration javaModelGenerator = new JavaModelGeneratorConfiguration();
+        javaModelGenerator.setTargetPackage("test.model");
+        javaModelGenerator.setTargetProject(targetProject.getPath());
+        context.setJavaModelGeneratorConfiguration(javaModelGenerator);
+
+        SqlMapGeneratorConfiguration sqlMapGenerator = new SqlMapGeneratorConfiguration();
+        sqlMapGenerator.setTargetPackage("test.mapper");
+        sqlMapGenerator.setTargetProject(targetProject.getPath());
+        context.setSqlMapGeneratorConfiguration(sqlMapGenerator);
+
+        JavaClientGeneratorConfiguration javaClientGenerator = new JavaClientGeneratorConfiguration();
+        javaClientGenerator.setConfigurationType("XMLMAPPER");
+        javaClientGenerator.setTargetPackage("test.mapper");
+        javaClientGenerator.setTargetProject(targetProject.getPath());
+        context.setJavaClientGeneratorConfiguration(javaClientGenerator);
+
+        PluginConfiguration plugin = new PluginConfiguration();
+        plugin.setConfigurationType(pluginType.getName());
+        for (String name : pluginProperties.stringPropertyNames()) {
+            plugin.addProperty(name, pluginProperties.getProperty(name));
+        }
+        context.addPluginConfiguration(plugin);
+
+        for (Map.Entry<String, Properties> entry : tablePluginProperties.entrySet()) {
+            TableConfiguration table = new TableConfiguration(context);
+            table.setTableName(entry.getKey());
+            for (String name : entry.getValue().stringPropertyNames()) {
+                table.addProperty(name, entry.getValue().getProperty(name));
+            }
+            context.addTableConfiguration(table);
+        }
+
+        Configuration configuration = new Configuration();
+        configuration.addContext(context);
+        MyBatisGenerator generator = new MyBatisGenerator(configuration, new DefaultShellCallback(true),
+                new ArrayList<>());
+        generator.generate(new NullProgressCallback(), null, null, false);
+        return generator;
+    }
+
+    static String getXmlContent(MyBatisGenerator generator, String fileName) {
+        for (GeneratedXmlFile file : generator.getGeneratedXmlFiles()) {
+            if (file.getFileName().equals(fileName)) {
+                return file.getFormattedContent();
+            }
+        }
+        throw new AssertionError("没有生成" + fileName);
+    }
+
+    /**
+     * 编译生成的java文件到dir中
+     *
+     * @return 可以加载生成的类的ClassLoader
+     */
+    static ClassLoader compile(MyBatisGenerator generator, File dir) throws Exception {
+        List<String> arguments = new ArrayList<>();
+        arguments.add("-classpath");
+        arguments.add(System.getProperty("java.class.path"));
+        arguments.add("-d");
+        arguments.add(dir.getPath());
+        for (GeneratedJavaFile file : generator.getGeneratedJavaFiles()) {
+            File source = new File(dir, file.getTargetPackage().replace('.', File.separatorChar)
+                    + File.separator + file.getFileName());
+            source.getParentFile().mkdirs();
+            Files.write(source.toPath(), file.getFormattedContent().getBytes(StandardCharsets.UTF_8));
+            arguments.add(source.getPath());
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler.run(null, null, null, arguments.toArray(new String[0])) != 0) {
+            throw new AssertionError("编译生成的java文件失败");
+        }
+        return new URLClassLoader(new URL[]{dir.toURI().toURL()}, GeneratorTestSupport.class.getClassLoader());
+    }
+
+    /**
+     * 用MyBatis解析生成的mapper xml
+     *
+     * @param classLoader {@link #compile(MyBatisGenerator, File)}返回的ClassLoader
+     */
+    static org.apache.ibatis.session.Configuration loadMapperConfiguration(MyBatisGenerator generator,
+                                                                          ClassLoader classLoader,
+                                                                          String... xmlFileNames) {
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        // mybatis解析resultMap和parameterType时通过context ClassLoader加载生成的类
+        thread.setContextClassLoader(classLoader);
+        try {
+            org.apache.ibatis.session.Configuration configuration = new org.apache.ibatis.session.Configuration();
+            for (String fileName : xmlFileNames) {
+                String xml = getXmlContent(generator, fileName);
+                new XMLMapperBuilder(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), configuration,
+                        fileName, configuration.getSqlFragments()).parse();
+            }
+            return configuration;
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    /**
+     * 连接到url指定的H2数据库, 执行的sql中的information_schema替换为mysql_information_schema
+     */
+    public static class H2ConnectionFactory implements ConnectionFactory {
+
+        private String url;
+
+        @Override
+        public void addConfigurationProperties(Properties properties) {
+            url = properties.getProperty("url");
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = DriverManager.getConnection(url, "sa", "");
+            return (Connection) Proxy.newProxyInstance(GeneratorTestSupport.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        if (args != null && args.length > 0 && args[0] instanceof String
+                                && (method.getName().startsWith("prepare") || method.getName().equals("nativeSQL"))) {
+                            args[0] = INFORMATION_SCHEMA.matcher((String) args[0])
+                                    .replaceAll(Matcher.quoteReplacement("mysql_information_schema."));
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
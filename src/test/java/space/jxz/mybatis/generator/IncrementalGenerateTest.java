@@ -0,0 +1,69 @@
+package space.jxz.mybatis.generator;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mybatis.generator.api.MyBatisGenerator;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalGenerateTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String url;
+
+    private Map<String, Properties> tables;
+
+    private Properties properties;
+
+    private File targetProject;
+
+    @Before
+    public void setUp() throws Exception {
+        targetProject = folder.newFolder("target");
+        url = GeneratorTestSupport.createDatabase(
+                "create table t_user (id bigint auto_increment primary key, name varchar(20))");
+        tables = new LinkedHashMap<>();
+        tables.put("t_user", new Properties());
+        properties = new Properties();
+        properties.setProperty("incrementalGenerate", "true");
+        properties.setProperty("incrementalManifestFile", new File(folder.getRoot(), "manifest.properties").getPath());
+    }
+
+    private MyBatisGenerator generate() throws Exception {
+        return GeneratorTestSupport.generate(url, Plugin.class, properties, tables, targetProject);
+    }
+
+    @Test
+    public void regeneratesTablesWhoseFilesWereNotWritten() throws Exception {
+        generate();
+        assertTrue(new File(folder.getRoot(), "manifest.properties.pending").exists());
+
+        // GeneratorTestSupport不写文件, 上次的指纹不会被确认
+        MyBatisGenerator generator = generate();
+        assertEquals(1, generator.getGeneratedXmlFiles().size());
+    }
+
+    @Test
+    public void skipsUnchangedTablesWhoseFilesWereWritten() throws Exception {
+        MyBatisGenerator generator = generate();
+        // 模拟MBG写入mapper xml
+        File xml = new File(new File(targetProject, "test" + File.separator + "mapper"),
+                generator.getGeneratedXmlFiles().get(0).getFileName());
+        assertTrue(xml.getParentFile().mkdirs());
+        assertTrue(xml.createNewFile());
+
+        generator = generate();
+        assertEquals(0, generator.getGeneratedXmlFiles().size());
+        assertTrue(new File(folder.getRoot(), "manifest.properties").exists());
+    }
+}
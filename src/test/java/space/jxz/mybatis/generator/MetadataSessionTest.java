@@ -0,0 +1,148 @@
+package space.jxz.mybatis.generator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mybatis.generator.api.MyBatisGenerator;
+
+import java.sql.Connection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class MetadataSessionTest {
+
+    private static final int TABLE_COUNT = 6;
+
+    /**
+     * 记录并行任务同时租用的最大连接数.
+     * 前两次租用会等待对方也租到连接, 串行执行时等待超时, 同时租用数只有1
+     */
+    static class LeaseRecordingSession extends MetadataSession {
+
+        private final CountDownLatch concurrentLeases = new CountDownLatch(2);
+
+        private final AtomicInteger leased = new AtomicInteger();
+
+        private final AtomicInteger maxLeased = new AtomicInteger();
+
+        LeaseRecordingSession(Supplier<Connection> connectionFactory, int poolSize) {
+            super(connectionFactory, poolSize);
+        }
+
+        @Override
+        public Connection lease() throws InterruptedException {
+            Connection connection = super.lease();
+            maxLeased.accumulateAndGet(leased.incrementAndGet(), Math::max);
+            concurrentLeases.countDown();
+            concurrentLeases.await(10, TimeUnit.SECONDS);
+            return connection;
+        }
+
+        @Override
+        public void release(Connection connection) {
+            leased.decrementAndGet();
+            super.release(connection);
+        }
+
+        int getMaxLeased() {
+            return maxLeased.get();
+        }
+    }
+
+    /**
+     * 使用LeaseRecordingSession作为元数据会话, 测试结束时关闭
+     */
+    public static class SessionRecordingPlugin extends Plugin {
+
+        static volatile LeaseRecordingSession session;
+
+        @Override
+        public MetadataSession getMetadataSession() {
+            if (session == null) {
+                int poolSize = getMetadataPoolSize();
+                session = new LeaseRecordingSession(this::getConnection, poolSize > 1 ? poolSize : 0);
+            }
+            return session;
+        }
+    }
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private String url;
+
+    private Map<String, Properties> tables;
+
+    @Before
+    public void setUp() throws Exception {
+        String[] ddl = new String[TABLE_COUNT];
+        tables = new LinkedHashMap<>();
+        for (int i = 0; i < TABLE_COUNT; i++) {
+            ddl[i] = "create table t_table" + i + " (id bigint auto_increment primary key, name varchar(20))";
+            tables.put("t_table" + i, new Properties());
+        }
+        url = GeneratorTestSupport.createDatabase(ddl);
+        SessionRecordingPlugin.session = null;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (SessionRecordingPlugin.session != null) {
+            SessionRecordingPlugin.session.close();
+        }
+    }
+
+    private MyBatisGenerator generate(Properties properties) throws Exception {
+        properties.setProperty("tableAndColumnComment", "true");
+        properties.setProperty("insertOrUpdate", "true");
+        return GeneratorTestSupport.generate(url, SessionRecordingPlugin.class, properties, tables,
+                temporaryFolder.getRoot());
+    }
+
+    @Test
+    public void serialLoadUsesOneConnection() throws Exception {
+        MyBatisGenerator generator = generate(new Properties());
+
+        assertNotNull(SessionRecordingPlugin.session);
+        assertEquals(1, SessionRecordingPlugin.session.getOpenedConnectionCount());
+        // 只有主键一个UniqueKey时才会生成insertOrUpdateByUniqueKey, 说明UniqueKey是从数据库加载的
+        for (int i = 0; i < TABLE_COUNT; i++) {
+            assertTrue(GeneratorTestSupport.getXmlContent(generator, "TTable" + i + "Mapper.xml")
+                    .contains("insertOrUpdateByUniqueKey"));
+        }
+    }
+
+    @Test
+    public void parallelLoadLeasesPoolSizeConnectionsConcurrently() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("parallelMetadata", "true");
+        properties.setProperty("metadataPoolSize", "2");
+        generate(properties);
+
+        assertNotNull(SessionRecordingPlugin.session);
+        assertEquals(2, SessionRecordingPlugin.session.getMaxLeased());
+        // 1个主连接和2个并行查询的连接
+        int opened = SessionRecordingPlugin.session.getOpenedConnectionCount();
+        assertTrue("opened " + opened + " connections", opened <= 3);
+    }
+
+    @Test
+    public void rejectsNonPositiveMetadataPoolSize() {
+        Properties properties = new Properties();
+        properties.setProperty("parallelMetadata", "true");
+        properties.setProperty("metadataPoolSize", "0");
+        assertThrows(RuntimeException.class, () -> generate(properties));
+    }
+}
@@ -0,0 +1,96 @@
+package space.jxz.mybatis.generator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mybatis.generator.api.GeneratedJavaFile;
+import org.mybatis.generator.api.MyBatisGenerator;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class MetadataSnapshotTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void fingerprintFollowsStructureNotData() throws Exception {
+        String url = GeneratorTestSupport.createDatabase(
+                "create table t_user (id bigint auto_increment primary key, name varchar(20))");
+        File snapshotFile = temporaryFolder.newFile("metadata.properties");
+        Properties properties = new Properties();
+        properties.setProperty("insertOrUpdate", "true");
+        properties.setProperty("metadataSnapshotFile", snapshotFile.getPath());
+
+        String first = generateAndGetFingerprint(url, properties, snapshotFile);
+
+        execute(url, "insert into t_user (name) values ('a')");
+        assertEquals(first, generateAndGetFingerprint(url, properties, snapshotFile));
+
+        execute(url, "create unique index uk_name on t_user (name)");
+        assertNotEquals(first, generateAndGetFingerprint(url, properties, snapshotFile));
+    }
+
+    @Test
+    public void snapshotKeepsTheOnlineIndexOrder() throws Exception {
+        // A_CODE按名字排在PRIMARY前面
+        String url = GeneratorTestSupport.createDatabase(
+                "create table t_order (id bigint primary key, z_code varchar(20), a_code varchar(20), " +
+                        "b_time int, a_time int)",
+                "create unique index z_code on t_order (z_code)",
+                "create unique index a_code on t_order (a_code)",
+                "create index b_time on t_order (b_time)",
+                "create index a_time on t_order (a_time)");
+        File snapshotFile = temporaryFolder.newFile("metadata.properties");
+        Properties properties = new Properties();
+        properties.setProperty("queryHints", "true");
+        properties.setProperty("metadataSnapshotFile", snapshotFile.getPath());
+
+        String online = getExampleContent(GeneratorTestSupport.generate(url, Plugin.class, properties,
+                Collections.singletonMap("t_order", new Properties()), temporaryFolder.getRoot()));
+        TableMetadata metadata = MetadataSnapshot.load(snapshotFile).get("T_ORDER");
+        assertEquals(Arrays.asList("PRIMARY", "A_CODE", "Z_CODE"), new ArrayList<>(metadata.getUniqueKeys().keySet()));
+        assertEquals(Arrays.asList("A_TIME", "B_TIME"), new ArrayList<>(metadata.getIndexes().keySet()));
+
+        properties.setProperty("metadataSnapshotOffline", "true");
+        String offline = getExampleContent(GeneratorTestSupport.generate(url, Plugin.class, properties,
+                Collections.singletonMap("t_order", new Properties()), temporaryFolder.getRoot()));
+        assertEquals(online, offline);
+    }
+
+    private static String getExampleContent(MyBatisGenerator generator) {
+        for (GeneratedJavaFile file : generator.getGeneratedJavaFiles()) {
+            if (file.getFileName().equals("TOrderExample.java")) {
+                return file.getFormattedContent();
+            }
+        }
+        throw new AssertionError("没有生成TOrderExample.java");
+    }
+
+    private String generateAndGetFingerprint(String url, Properties properties, File snapshotFile)
+            throws Exception {
+        GeneratorTestSupport.generate(url, Plugin.class, properties,
+                Collections.singletonMap("t_user", new Properties()), temporaryFolder.getRoot());
+        TableMetadata metadata = MetadataSnapshot.load(snapshotFile).get("T_USER");
+        assertNotNull(metadata);
+        return metadata.getFingerprint();
+    }
+
+    private static void execute(String url, String sql) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
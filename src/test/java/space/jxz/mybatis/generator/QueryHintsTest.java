@@ -0,0 +1,84 @@
+package space.jxz.mybatis.generator;
+
+import org.apache.ibatis.session.Configuration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mybatis.generator.api.MyBatisGenerator;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertTrue;
+
+public class QueryHintsTest {
+
+    private static final String OPTIMIZER_HINTS = "/*+ MAX_EXECUTION_TIME(1000) */";
+
+    private static final String INDEX_HINT = "T_USER force index (`IDX_NAME`)";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Configuration configuration;
+
+    private Object example;
+
+    @Before
+    public void setUp() throws Exception {
+        String url = GeneratorTestSupport.createDatabase(
+                "create table t_user (id bigint auto_increment primary key, name varchar(20))",
+                "create index idx_name on t_user (name)");
+        Properties properties = new Properties();
+        properties.setProperty("queryHints", "true");
+        // selectManuallyByExample中有limit子句, 需要Example中的limit/offset
+        properties.setProperty("limitAndOffset", "true");
+        properties.setProperty("manuallySelect", "true");
+        properties.setProperty("manuallyUpdate", "true");
+        properties.setProperty("streamingSelect", "true");
+        // 使用MBG默认的注释, 每个语句开头都有<!-- .. -->
+        MyBatisGenerator generator = GeneratorTestSupport.generate(url, Plugin.class, properties,
+                Collections.singletonMap("t_user", new Properties()), temporaryFolder.newFolder("target"), false);
+
+        ClassLoader classLoader = GeneratorTestSupport.compile(generator, temporaryFolder.getRoot());
+        configuration = GeneratorTestSupport.loadMapperConfiguration(generator, classLoader, "TUserMapper.xml");
+
+        Class<?> exampleType = classLoader.loadClass("test.model.TUserExample");
+        example = exampleType.newInstance();
+        exampleType.getMethod("setOptimizerHints", String.class).invoke(example, "MAX_EXECUTION_TIME(1000)");
+        exampleType.getMethod("forceIndex", String[].class).invoke(example, (Object) new String[]{"IDX_NAME"});
+    }
+
+    private String getSql(String statementId, Object parameter) {
+        return configuration.getMappedStatement("test.mapper.TUserMapper." + statementId)
+                .getBoundSql(parameter).getSql().replaceAll("\\s+", " ").trim();
+    }
+
+    private static void assertHints(String keyword, String sql, boolean withIndexHint) {
+        assertTrue(sql, sql.startsWith(keyword + " " + OPTIMIZER_HINTS + " "));
+        if (withIndexHint) {
+            assertTrue(sql, sql.contains(INDEX_HINT));
+        }
+    }
+
+    @Test
+    public void hintsSurviveStatementComments() {
+        assertHints("select", getSql("selectByExample", example), true);
+        assertHints("select", getSql("countByExample", example), true);
+        assertHints("delete", getSql("deleteByExample", example), false);
+        assertHints("select", getSql("selectByExampleWithCursor", example), true);
+    }
+
+    @Test
+    public void hintsSurviveManualStatementComments() {
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("example", example);
+        parameter.put("selectClause", "id");
+        parameter.put("updateClause", "name = null");
+        assertHints("select", getSql("selectManuallyByExample", parameter), true);
+        assertHints("update", getSql("updateManuallyByExample", parameter), true);
+    }
+}
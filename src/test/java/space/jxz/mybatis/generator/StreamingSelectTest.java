@@ -0,0 +1,55 @@
+package space.jxz.mybatis.generator;
+
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.Configuration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mybatis.generator.api.MyBatisGenerator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamingSelectTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void streamingStatementsUseTheTableFetchSize() throws Exception {
+        String url = GeneratorTestSupport.createDatabase(
+                "create table t_user (id bigint auto_increment primary key, name varchar(20))",
+                "create table t_log (id bigint auto_increment primary key, message varchar(200))");
+        Properties properties = new Properties();
+        properties.setProperty("streamingSelect", "true");
+        properties.setProperty("streamingFetchSize", "1000");
+        properties.setProperty("manuallySelect", "true");
+        properties.setProperty("limitAndOffset", "true");
+        Map<String, Properties> tables = new LinkedHashMap<>();
+        tables.put("t_user", new Properties());
+        Properties logProperties = new Properties();
+        logProperties.setProperty("streamingFetchSize", "500");
+        tables.put("t_log", logProperties);
+        MyBatisGenerator generator = GeneratorTestSupport.generate(url, Plugin.class, properties, tables,
+                temporaryFolder.newFolder("target"));
+
+        ClassLoader classLoader = GeneratorTestSupport.compile(generator, temporaryFolder.getRoot());
+        Configuration configuration = GeneratorTestSupport.loadMapperConfiguration(generator, classLoader,
+                "TUserMapper.xml", "TLogMapper.xml");
+
+        for (String id : new String[]{"selectByExampleWithCursor", "selectByExampleWithResultHandler",
+                "selectManuallyByExampleWithCursor", "selectManuallyByExampleWithResultHandler"}) {
+            assertStreaming(configuration.getMappedStatement("test.mapper.TUserMapper." + id), 1000);
+            assertStreaming(configuration.getMappedStatement("test.mapper.TLogMapper." + id), 500);
+        }
+    }
+
+    private static void assertStreaming(MappedStatement statement, int fetchSize) {
+        assertEquals(statement.getId(), Integer.valueOf(fetchSize), statement.getFetchSize());
+        assertEquals(statement.getId(), ResultSetType.FORWARD_ONLY, statement.getResultSetType());
+    }
+}